@@ -0,0 +1,185 @@
+package Bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/*
+Minimal JMH-style benchmark harness
+-----------------------------------
+- Benchmarks are registered with a name, a list of input sizes and a fixture that
+  builds the operation for one size (setup is never timed)
+- Each (benchmark, size) pair runs warm-up iterations followed by measured
+  iterations of a fixed wall time; the score is ops/s averaged over iterations
+  with its standard deviation, plus items/s (ops/s * size)
+- System.out is swapped for a discarding stream while an operation runs, so
+  console I/O does not dominate the numbers; results are printed afterwards
+- Results go to the real stdout and optionally to a CSV file for before/after diffs
+- Settings (system properties):
+    -Dbench.warmup=3       warm-up iterations
+    -Dbench.iterations=5   measured iterations
+    -Dbench.time=1000      milliseconds per iteration
+    -Dbench.sizes=10,1000  override every benchmark's sizes
+    -Dbench.csv=<path>     also write results as CSV
+*/
+
+public final class Harness {
+    /** Sink that keeps results alive so the JIT cannot drop the measured work. */
+    public static final class Blackhole {
+        private Object last;
+        private long sum;
+
+        public void consume(Object value) {
+            last = value;
+        }
+
+        public void consume(long value) {
+            sum += value;
+        }
+
+        public void consume(double value) {
+            sum += Double.doubleToRawLongBits(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(sum) + last;
+        }
+    }
+
+    /** One invocation of the code under test. */
+    public interface Op {
+        void run(Blackhole blackhole) throws Throwable;
+    }
+
+    /** Builds the operation for one input size. */
+    public interface Fixture {
+        Op setup(int size) throws Exception;
+    }
+
+    private static final class Entry {
+        final String name;
+        final int[] sizes;
+        final Fixture fixture;
+
+        Entry(String name, int[] sizes, Fixture fixture) {
+            this.name = name;
+            this.sizes = sizes;
+            this.fixture = fixture;
+        }
+    }
+
+    public static final PrintStream NULL_OUT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final int warmup = Integer.getInteger("bench.warmup", 3);
+    private final int iterations = Integer.getInteger("bench.iterations", 5);
+    private final long iterationNanos = Long.getLong("bench.time", 1000) * 1_000_000L;
+    private final String sizeOverride = System.getProperty("bench.sizes");
+    private final String csv = System.getProperty("bench.csv");
+
+    public Harness register(String name, int[] sizes, Fixture fixture) {
+        entries.add(new Entry(name, sizes, fixture));
+        return this;
+    }
+
+    private int[] sizes(Entry entry) {
+        if (sizeOverride == null) {
+            return entry.sizes;
+        }
+        String[] parts = sizeOverride.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    /** Runs every benchmark whose name matches {@code filter} (regex, find semantics). */
+    public void run(String filter) throws Exception {
+        Pattern pattern = Pattern.compile(filter);
+        PrintStream out = System.out;
+        StringBuilder rows = new StringBuilder("benchmark,size,ops_per_sec,stddev,items_per_sec,us_per_op\n");
+        out.println(String.format("# %s %s, %d cores, warmup %d x %d ms, measure %d x %d ms",
+                System.getProperty("java.vm.name"), System.getProperty("java.version"),
+                Runtime.getRuntime().availableProcessors(), warmup, iterationNanos / 1_000_000, iterations,
+                iterationNanos / 1_000_000));
+        out.println(String.format("%-34s %10s %16s %12s %16s %12s", "benchmark", "size", "ops/s", "+-", "items/s",
+                "us/op"));
+        Blackhole blackhole = new Blackhole();
+        for (Entry entry : entries) {
+            if (!pattern.matcher(entry.name).find()) {
+                continue;
+            }
+            for (int size : sizes(entry)) {
+                Op op = entry.fixture.setup(size);
+                double[] scores = new double[iterations];
+                System.setOut(NULL_OUT);
+                try {
+                    for (int i = 0; i < warmup; i++) {
+                        iteration(op, blackhole);
+                    }
+                    for (int i = 0; i < iterations; i++) {
+                        scores[i] = iteration(op, blackhole);
+                    }
+                } catch (Throwable t) {
+                    System.setOut(out);
+                    throw new IllegalStateException(entry.name + " failed at size " + size, t);
+                } finally {
+                    System.setOut(out);
+                }
+                double mean = 0;
+                for (double score : scores) {
+                    mean += score / iterations;
+                }
+                double variance = 0;
+                for (double score : scores) {
+                    variance += (score - mean) * (score - mean) / Math.max(1, iterations - 1);
+                }
+                double stddev = Math.sqrt(variance);
+                out.println(String.format("%-34s %10d %16.1f %12.1f %16.1f %12.3f", entry.name, size, mean, stddev,
+                        mean * size, 1e6 / mean));
+                rows.append(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.6f%n", entry.name, size, mean, stddev,
+                        mean * size, 1e6 / mean));
+            }
+        }
+        if (csv != null) {
+            writeCsv(rows.toString());
+        }
+        // printing the sink keeps every consumed value reachable
+        if (blackhole.toString().hashCode() == 42) {
+            out.println();
+        }
+    }
+
+    private double iteration(Op op, Blackhole blackhole) throws Throwable {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            op.run(blackhole);
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return ops * 1e9 / elapsed;
+    }
+
+    private void writeCsv(String rows) throws IOException {
+        Files.write(Paths.get(csv), rows.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,144 @@
+package Bench;
+
+import M3.CommandLineCalculator;
+import M3.MadLibsGenerator;
+import M3.SlashCommandHandler;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/*
+Benchmark suite for the M2 / M3 hot paths
+-----------------------------------------
+- Usage: java Bench.HotPathBenchmarks [filter-regex]
+  e.g.   java -Dbench.csv=before.csv Bench.HotPathBenchmarks "m2\\."
+- Build with the rest of the tree: ./build.sh . (from the repo root)
+- Every benchmark is parameterized by input size; all inputs come from fixed seeds
+  so runs are repeatable
+- The Problem1-4 methods are the real private methods (called through method
+  handles); their console output goes to the harness' null sink
+- JMH itself is not used: the tree has no dependency manager, so Harness provides
+  the same warm-up / iteration / blackhole structure in plain Java
+*/
+
+public class HotPathBenchmarks {
+    private static final int[] ARRAY_SIZES = { 1_000, 100_000, 1_000_000 };
+
+    private static MethodHandle problem(String className, String method, Class<?> arrayType) throws Exception {
+        Class<?> owner = Class.forName(className);
+        return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).findStatic(owner, method,
+                MethodType.methodType(void.class, arrayType, int.class));
+    }
+
+    private static String[] expressions(int size) {
+        SplittableRandom random = new SplittableRandom(1);
+        String[] expressions = new String[size * 3];
+        for (int i = 0; i < size; i++) {
+            expressions[i * 3] = String.format("%.3f", random.nextDouble(-1000, 1000));
+            expressions[i * 3 + 1] = random.nextBoolean() ? "+" : "-";
+            expressions[i * 3 + 2] = Integer.toString(random.nextInt(-1000, 1000));
+        }
+        return expressions;
+    }
+
+    private static String[] commands(int size) {
+        String[] mix = { "/greet Alice", "/roll 3d6", "/echo hello there", "/ROLL 10d20", "/unknown", "/greet",
+                "/Echo mixed Case", "/roll bad" };
+        String[] commands = new String[size];
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < size; i++) {
+            commands[i] = mix[random.nextInt(mix.length)];
+        }
+        return commands;
+    }
+
+    private static String storyLine(int placeholders) {
+        String[] kinds = { "adjective", "noun", "verb_past_tense", "place", "plural_noun" };
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < placeholders; i++) {
+            line.append("The quick <").append(kinds[i % kinds.length]).append("> jumped ");
+        }
+        return line.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Harness harness = new Harness();
+
+        harness.register("m2.Problem1.printOdds", ARRAY_SIZES, size -> {
+            MethodHandle printOdds = problem("M2.Problem1", "printOdds", int[].class);
+            int[] data = new SplittableRandom(42).ints(size, -1000, 1000).toArray();
+            return bh -> {
+                printOdds.invokeExact(data, 1);
+            };
+        });
+        harness.register("m2.Problem2.sumValues", ARRAY_SIZES, size -> {
+            MethodHandle sumValues = problem("M2.Problem2", "sumValues", double[].class);
+            double[] data = new SplittableRandom(42).doubles(size, -1e6, 1e6).toArray();
+            return bh -> {
+                sumValues.invokeExact(data, 1);
+            };
+        });
+        harness.register("m2.Problem3.bePositive", ARRAY_SIZES, size -> {
+            MethodHandle bePositive = problem("M2.Problem3", "bePositive", Object[].class);
+            SplittableRandom random = new SplittableRandom(42);
+            Object[] data = new Object[size];
+            for (int i = 0; i < size; i++) {
+                int kind = i % 4;
+                data[i] = kind == 0 ? (Object) random.nextInt(-1000, 1000)
+                        : kind == 1 ? (Object) random.nextDouble(-1e3, 1e3)
+                                : kind == 2 ? (Object) (float) random.nextDouble(-1e3, 1e3)
+                                        : (Object) Integer.toString(random.nextInt(-1000, 1000));
+            }
+            return bh -> {
+                bePositive.invokeExact(data, 1);
+            };
+        });
+        harness.register("m2.Problem4.transformText", new int[] { 100, 10_000 }, size -> {
+            MethodHandle transformText = problem("M2.Problem4", "transformText", String[].class);
+            String[] words = { "  hello", "World!!", "java", "special@#$", "mIxEd", "123", "   " };
+            SplittableRandom random = new SplittableRandom(42);
+            String[] data = new String[size];
+            for (int i = 0; i < size; i++) {
+                StringBuilder phrase = new StringBuilder();
+                for (int w = 0; w < 6; w++) {
+                    phrase.append(words[random.nextInt(words.length)]).append(' ');
+                }
+                data[i] = phrase.toString();
+            }
+            return bh -> {
+                transformText.invokeExact(data, 1);
+            };
+        });
+
+        harness.register("m3.Calculator.evaluate", new int[] { 1, 1_000 }, size -> {
+            String[] expressions = expressions(size);
+            return bh -> {
+                for (int i = 0; i < expressions.length; i += 3) {
+                    bh.consume(CommandLineCalculator.evaluate(expressions[i], expressions[i + 1], expressions[i + 2]));
+                }
+            };
+        });
+        harness.register("m3.SlashCommand.dispatch", new int[] { 1, 1_000 }, size -> {
+            String[] commands = commands(size);
+            Random rand = new Random(7);
+            return bh -> {
+                for (String command : commands) {
+                    bh.consume(SlashCommandHandler.respond(command, rand));
+                }
+            };
+        });
+        harness.register("m3.SlashCommand.roll", new int[] { 1, 1_000, 1_000_000 }, size -> {
+            String command = "/roll " + size + "d6";
+            Random rand = new Random(7);
+            return bh -> bh.consume(SlashCommandHandler.respond(command, rand));
+        });
+        harness.register("m3.MadLibs.fillPlaceholders", new int[] { 1, 10, 100 }, size -> {
+            String line = storyLine(size);
+            return bh -> bh.consume(MadLibsGenerator.fillPlaceholders(line, prompt -> "word"));
+        });
+
+        harness.run(args.length > 0 ? args[0] : "");
+    }
+}
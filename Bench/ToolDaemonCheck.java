@@ -0,0 +1,83 @@
+package Bench;
+
+import Common.ToolClient;
+import Common.ToolDaemon;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/*
+Round trips through ToolDaemon for the stdin/stdout streaming modes
+-------------------------------------------------------------------
+- Usage: java Bench.ToolDaemonCheck
+  (run from the repo root with the tree compiled, like run.sh)
+- Runs "CommandLineCalculator --stream - -" twice in one daemon and checks that
+  each call reads its own piped stdin and answers on its own stdout
+- Then "SlashCommandHandler --replay - -", "MadLibsGenerator --bulk 3 -" and a
+  plain tool, to show the earlier calls left the daemon's stdin/stdout usable
+- Throws IllegalStateException on the first call whose output or exit code differs
+*/
+
+public class ToolDaemonCheck {
+    private static String call(Path socket, String tool, String stdin, String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = ToolClient.run(socket, tool, List.of(args), new ByteArrayInputStream(
+                stdin.getBytes(StandardCharsets.UTF_8)), out, err);
+        if (code != 0) {
+            throw new IllegalStateException(tool + " " + List.of(args) + " exited with " + code + ": "
+                    + err.toString(StandardCharsets.UTF_8));
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void expect(String what, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(what + ": expected " + expected.replace("\n", "\\n") + " but got "
+                    + actual.replace("\n", "\\n"));
+        }
+        System.out.println("ok: " + what);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("tool-daemon");
+        Path socket = directory.resolve("tools.sock");
+        ToolDaemon daemon = new ToolDaemon(socket);
+        Thread server = new Thread(daemon::serve, "tool-daemon");
+        server.setDaemon(true);
+        server.start();
+        try {
+            expect("--stream - - (first call)", "3\n-2\n",
+                    call(socket, "CommandLineCalculator", "1 + 2\n5 - 7\n", "--stream", "-", "-"));
+            expect("--stream - - (second call)", "6\n",
+                    call(socket, "CommandLineCalculator", "10 - 4\n", "--stream", "-", "-"));
+
+            String replay = call(socket, "SlashCommandHandler", "/echo one\n/echo two\n/quit\n", "--replay", "-",
+                    "-");
+            if (!replay.contains("one") || !replay.contains("two")) {
+                throw new IllegalStateException("--replay - - did not answer its piped commands: " + replay);
+            }
+            System.out.println("ok: --replay - -");
+
+            String stories = call(socket, "MadLibsGenerator", "", "--bulk", "3", "-");
+            if (stories.isBlank()) {
+                throw new IllegalStateException("--bulk 3 - wrote nothing");
+            }
+            System.out.println("ok: --bulk 3 -");
+
+            if (call(socket, "Hello", "").isEmpty()) {
+                throw new IllegalStateException("Hello wrote nothing after the streaming calls");
+            }
+            System.out.println("ok: plain tool after the streaming calls");
+        } finally {
+            daemon.close();
+            Files.deleteIfExists(directory);
+        }
+        // the daemon's own descriptors must still work after hosting the streaming modes
+        System.out.println("ToolDaemon round trips passed");
+    }
+}
@@ -0,0 +1,131 @@
+package Bench;
+
+import Common.ToolClient;
+import Common.ToolDaemon;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Cold JVM vs ToolDaemon latency per tool
+---------------------------------------
+- Usage: java Bench.ToolLatencyBenchmark [warm-runs] [cold-runs]
+  (run from the repo root with the tree compiled, like run.sh)
+- cold:   a new "java <tool class>" process per run, as run.sh does it
+- first:  the first call of the tool in a running daemon (class loading, no JIT)
+- warm:   median of the following calls through ToolClient.run from this JVM,
+          i.e. what a caller that is already a JVM (or a script runner) pays
+- client: a new "java Common.ToolClient <tool>" process against the same daemon;
+          it still pays for one small JVM, but never loads or warms the tool
+- Every tool gets the same fixed arguments / stdin in every mode
+*/
+
+public class ToolLatencyBenchmark {
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+
+    private static final class Tool {
+        final String name;
+        final List<String> args;
+        final byte[] stdin;
+
+        Tool(String name, String stdin, String... args) {
+            this.name = name;
+            this.args = Arrays.asList(args);
+            this.stdin = stdin.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long process(List<String> command, byte[] stdin) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        try (OutputStream in = process.getOutputStream()) {
+            in.write(stdin);
+        }
+        int code = process.waitFor();
+        long elapsed = System.nanoTime() - start;
+        if (code != 0) {
+            throw new IOException(command + " exited with " + code);
+        }
+        return elapsed;
+    }
+
+    private static long daemonCall(Path socket, Tool tool) throws IOException {
+        long start = System.nanoTime();
+        int code = ToolClient.run(socket, tool.name, tool.args, new ByteArrayInputStream(tool.stdin), DISCARD,
+                DISCARD);
+        long elapsed = System.nanoTime() - start;
+        if (code != 0) {
+            throw new IOException(tool.name + " exited with " + code);
+        }
+        return elapsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmRuns = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int coldRuns = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String madLibsAnswers = "word\n".repeat(40);
+        Tool[] tools = { new Tool("CommandLineCalculator", "", "1.5", "+", "2.25"),
+                new Tool("SlashCommandHandler", "/greet Bob\n/roll 3d6\n/echo hi\n/quit\n"),
+                new Tool("MadLibsGenerator", madLibsAnswers), new Tool("Problem1", ""), new Tool("Problem2", ""),
+                new Tool("Problem3", ""), new Tool("Problem4", ""), new Tool("Hello", ""),
+                new Tool("Overflow", "") };
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = System.getProperty("java.class.path");
+        Path directory = Files.createTempDirectory("tool-daemon");
+        Path socket = directory.resolve("tools.sock");
+        ToolDaemon daemon = new ToolDaemon(socket);
+        Thread server = new Thread(daemon::serve, "tool-daemon");
+        server.setDaemon(true);
+        server.start();
+        try {
+            System.out.println(String.format("%-22s %10s %10s %10s %10s %8s", "tool", "cold ms", "first ms",
+                    "warm ms", "client ms", "speedup"));
+            for (Tool tool : tools) {
+                List<String> cold = new ArrayList<>(List.of(java, "-cp", classPath, ToolDaemon.className(tool.name)));
+                cold.addAll(tool.args);
+                long[] coldTimes = new long[coldRuns];
+                for (int i = 0; i < coldRuns; i++) {
+                    coldTimes[i] = process(cold, tool.stdin);
+                }
+
+                long first = daemonCall(socket, tool);
+                long[] warmTimes = new long[warmRuns];
+                for (int i = 0; i < warmRuns; i++) {
+                    warmTimes[i] = daemonCall(socket, tool);
+                }
+
+                List<String> client = new ArrayList<>(List.of(java, "-cp", classPath,
+                        "-Dtools.socket=" + socket, "Common.ToolClient", tool.name));
+                client.addAll(tool.args);
+                long[] clientTimes = new long[coldRuns];
+                for (int i = 0; i < coldRuns; i++) {
+                    clientTimes[i] = process(client, tool.stdin);
+                }
+
+                long coldMedian = median(coldTimes);
+                long warmMedian = median(warmTimes);
+                System.out.println(String.format("%-22s %10.1f %10.1f %10.2f %10.1f %7.0fx", tool.name,
+                        coldMedian / 1e6, first / 1e6, warmMedian / 1e6, median(clientTimes) / 1e6,
+                        (double) coldMedian / warmMedian));
+            }
+        } finally {
+            daemon.close();
+            Files.deleteIfExists(directory);
+        }
+    }
+}
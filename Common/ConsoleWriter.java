@@ -0,0 +1,199 @@
+package Common;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+
+/*
+Shared console output for the M2/M3 BaseClass helpers
+-----------------------------------------------------
+- Text is appended into one reusable char buffer and only reaches System.out on
+  flush() (or when the buffer fills), as a single encoded byte[] write, so an
+  array dump costs one write per batch instead of one print per element
+- Callers decide the flush points; the BaseClass helpers flush before returning so
+  their output still interleaves correctly with plain System.out calls
+- Color escapes are written straight into the buffer (no StringBuilder per message)
+  and can be turned off: -Dconsole.color=always (default) | never | auto
+  (auto = only when attached to a terminal and NO_COLOR is not set)
+- typeTag() caches the one-letter type tag ("I", "D", "S", ...) per class
+- System.out is looked up on every flush, so System.setOut redirection still works
+*/
+
+public final class ConsoleWriter {
+    public static final String RESET = "\033[0m";
+    private static final int CAPACITY = 1 << 16;
+    // what println would write, so output matches it on every platform
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private static final boolean COLOR = resolveColor(System.getProperty("console.color", "always"));
+    private static final ConsoleWriter OUT = new ConsoleWriter();
+
+    private static final ClassValue<String> TYPE_TAGS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getSimpleName();
+            return name.isEmpty() ? "?" : name.substring(0, 1);
+        }
+    };
+
+    private final char[] chars = new char[CAPACITY];
+    private final CharBuffer charView = CharBuffer.wrap(chars);
+    private final ByteBuffer bytes;
+    private final CharsetEncoder encoder;
+    private int length;
+
+    private ConsoleWriter() {
+        Charset charset = stdoutCharset();
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = ByteBuffer.allocate((int) (CAPACITY * encoder.maxBytesPerChar()) + 16);
+    }
+
+    /** The shared writer for standard output. */
+    public static ConsoleWriter out() {
+        return OUT;
+    }
+
+    private static boolean resolveColor(String mode) {
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "never":
+            case "off":
+                return false;
+            case "auto":
+                return System.console() != null && System.getenv("NO_COLOR") == null;
+            default:
+                return true;
+        }
+    }
+
+    private static Charset stdoutCharset() {
+        String name = System.getProperty("sun.stdout.encoding");
+        try {
+            return name != null ? Charset.forName(name) : Charset.defaultCharset();
+        } catch (RuntimeException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    /** Whether ANSI color codes should be written. */
+    public static boolean colorEnabled() {
+        return COLOR;
+    }
+
+    /** First letter of the simple class name of {@code item}, cached per class. */
+    public static String typeTag(Object item) {
+        return TYPE_TAGS.get(item.getClass());
+    }
+
+    public synchronized ConsoleWriter append(CharSequence text) {
+        if (text == null) {
+            text = "null";
+        }
+        int n = text.length();
+        for (int i = 0; i < n;) {
+            if (length == CAPACITY) {
+                flushBuffer();
+            }
+            int count = Math.min(n - i, CAPACITY - length);
+            if (text instanceof String) {
+                ((String) text).getChars(i, i + count, chars, length);
+            } else {
+                for (int k = 0; k < count; k++) {
+                    chars[length + k] = text.charAt(i + k);
+                }
+            }
+            length += count;
+            i += count;
+        }
+        return this;
+    }
+
+    public synchronized ConsoleWriter append(char c) {
+        if (length == CAPACITY) {
+            flushBuffer();
+        }
+        chars[length++] = c;
+        return this;
+    }
+
+    /** Appends {@code value} in decimal without creating a String. */
+    public synchronized ConsoleWriter append(long value) {
+        // 20 chars covers Long.MIN_VALUE
+        if (CAPACITY - length < 20) {
+            flushBuffer();
+        }
+        if (value == Long.MIN_VALUE) {
+            "-9223372036854775808".getChars(0, 20, chars, length);
+            length += 20;
+            return this;
+        }
+        if (value < 0) {
+            chars[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int i = length + digits;
+        length = i;
+        do {
+            chars[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return this;
+    }
+
+    public ConsoleWriter append(Object value) {
+        return append(String.valueOf(value));
+    }
+
+    public ConsoleWriter newLine() {
+        return append(NEW_LINE);
+    }
+
+    /** Starts a colored run; writes nothing when color is off. */
+    public ConsoleWriter color(String ansiCode) {
+        return COLOR ? append(ansiCode) : this;
+    }
+
+    /** Ends a colored run; writes nothing when color is off. */
+    public ConsoleWriter reset() {
+        return COLOR ? append(RESET) : this;
+    }
+
+    /** Appends {@code text} wrapped in {@code ansiCode} and RESET (plain text when color is off). */
+    public ConsoleWriter colored(CharSequence text, String ansiCode) {
+        return color(ansiCode).append(text).reset();
+    }
+
+    /** Writes everything buffered so far to System.out and flushes it. */
+    public synchronized void flush() {
+        flushBuffer();
+        System.out.flush();
+    }
+
+    private void flushBuffer() {
+        if (length == 0) {
+            return;
+        }
+        PrintStream target = System.out;
+        // keep a dangling high surrogate until its pair arrives
+        int end = Character.isHighSurrogate(chars[length - 1]) ? length - 1 : length;
+        charView.limit(end).position(0);
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(charView, bytes, true);
+        encoder.flush(bytes);
+        target.write(bytes.array(), 0, bytes.position());
+        if (end < length) {
+            chars[0] = chars[end];
+        }
+        length -= end;
+    }
+}
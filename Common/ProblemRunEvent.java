@@ -0,0 +1,31 @@
+package Common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event committed by {@link RunMetrics} for every timed problem run and input
+ * segment. Runs are only timed with -Dmetrics set, so a recording needs both, e.g.
+ * {@code java -Dmetrics=table -XX:StartFlightRecording=filename=run.jfr M2.Problem1}.
+ */
+@Name("rps.ProblemRun")
+@Label("Problem Run")
+@Category("RPS-Java")
+@Description("One problem run or one input array inside it")
+@StackTrace(false)
+public class ProblemRunEvent extends Event {
+    @Label("Label")
+    String label;
+
+    @Label("Items")
+    long items;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,292 @@
+package Common;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Hot-path timing for problem runs (driven by printHeader / printFooter)
+---------------------------------------------------------------------
+- begin(label) starts a run, segment(name, items) marks the start of the next
+  input inside it (e.g. each array passed to printArrayInfo), end() closes both
+- Every run and segment records monotonic System.nanoTime() duration, bytes
+  allocated by the thread (com.sun.management.ThreadMXBean) and item count into
+  a per-label latency histogram
+- Each one is also committed as a ProblemRunEvent for JFR
+- Only active when -Dmetrics=table or -Dmetrics=json is set (otherwise every call
+  returns right away); the summary is printed at exit, and -Dmetrics.file=<path>
+  writes it to a file instead of stderr
+- A JFR recording alone records no ProblemRunEvents, it needs -Dmetrics too: asking
+  JFR whether the event is enabled would load it into every run (~300ms)
+- record(...) lets tools without a header/footer pair (slash commands, ...) add
+  their own timings
+*/
+
+public final class RunMetrics {
+    private static final String MODE = System.getProperty("metrics", "off").toLowerCase(Locale.ROOT);
+    private static final boolean ENABLED = MODE.equals("table") || MODE.equals("json");
+
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
+    static {
+        if (enabled()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(RunMetrics::dump, "metrics-dump"));
+        }
+    }
+
+    private RunMetrics() {
+    }
+
+    // loaded on first use, so runs without -Dmetrics never touch the management beans
+    private static final class Allocation {
+        static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        static final boolean SUPPORTED = allocationSupported();
+    }
+
+    private static boolean allocationSupported() {
+        if (!(Allocation.THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) Allocation.THREADS;
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+    }
+
+    private static long allocatedBytes() {
+        return Allocation.SUPPORTED
+                ? ((com.sun.management.ThreadMXBean) Allocation.THREADS).getCurrentThreadAllocatedBytes()
+                : 0;
+    }
+
+    /** A timing in progress. */
+    private static final class Span {
+        final String label;
+        // a run adds up the items of its segments
+        long items;
+        final long startNanos = System.nanoTime();
+        final long startAllocated = allocatedBytes();
+        final ProblemRunEvent event = new ProblemRunEvent();
+
+        Span(String label, long items) {
+            this.label = label;
+            this.items = items;
+            event.begin();
+        }
+
+        void finish() {
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = allocatedBytes() - startAllocated;
+            event.end();
+            if (event.shouldCommit()) {
+                event.label = label;
+                event.items = items;
+                event.allocatedBytes = allocated;
+                event.commit();
+            }
+            record(label, nanos, allocated, items);
+        }
+    }
+
+    private static final class Context {
+        Span run;
+        Span segment;
+    }
+
+    /** Whether a summary was requested (-Dmetrics=table|json); lets hot paths skip their timing. */
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    /** Starts timing a run; closes a run left open on this thread. */
+    public static void begin(String label) {
+        if (!enabled()) {
+            return;
+        }
+        Context context = CONTEXT.get();
+        if (context.run != null) {
+            end();
+        }
+        context.run = new Span(label, 0);
+    }
+
+    /** Closes the previous segment of the current run and starts timing the next one. */
+    public static void segment(String name, long items) {
+        if (!enabled()) {
+            return;
+        }
+        Context context = CONTEXT.get();
+        if (context.run == null) {
+            return;
+        }
+        if (context.segment != null) {
+            context.segment.finish();
+        }
+        context.segment = new Span(context.run.label + " " + name, items);
+        context.run.items += items;
+    }
+
+    /** Closes the current segment and run. */
+    public static void end() {
+        if (!enabled()) {
+            return;
+        }
+        Context context = CONTEXT.get();
+        if (context.segment != null) {
+            context.segment.finish();
+            context.segment = null;
+        }
+        if (context.run != null) {
+            context.run.finish();
+            context.run = null;
+        }
+    }
+
+    /** Adds one timing to {@code label}'s histogram. */
+    public static void record(String label, long nanos, long allocatedBytes, long items) {
+        if (!enabled()) {
+            return;
+        }
+        STATS.computeIfAbsent(label, Stats::new).add(nanos, allocatedBytes, items);
+    }
+
+    /** Snapshot of the summary in the given format ("table" or "json"). */
+    public static String summary(String format) {
+        Map<String, Stats> sorted = new TreeMap<>(STATS);
+        List<String> rows = new ArrayList<>();
+        for (Stats stats : sorted.values()) {
+            rows.add(format.equals("json") ? stats.json() : stats.row());
+        }
+        if (format.equals("json")) {
+            return "[\n  " + String.join(",\n  ", rows) + "\n]\n";
+        }
+        StringBuilder table = new StringBuilder(String.format("%-40s %8s %12s %12s %12s %14s %14s%n", "label", "count",
+                "p50 (us)", "p99 (us)", "max (us)", "items/s", "alloc/op (B)"));
+        for (String row : rows) {
+            table.append(row).append(System.lineSeparator());
+        }
+        return table.toString();
+    }
+
+    private static void dump() {
+        String text = summary(MODE);
+        String file = System.getProperty("metrics.file");
+        if (file == null) {
+            PrintStream err = System.err;
+            err.print(text);
+            err.flush();
+            return;
+        }
+        try {
+            Files.write(Paths.get(file), text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Stats {
+        final String label;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        long count;
+        long totalNanos;
+        long totalAllocated;
+        long totalItems;
+
+        Stats(String label) {
+            this.label = label;
+        }
+
+        synchronized void add(long nanos, long allocated, long items) {
+            histogram.add(nanos);
+            count++;
+            totalNanos += nanos;
+            totalAllocated += allocated;
+            totalItems += items;
+        }
+
+        synchronized String row() {
+            return String.format("%-40s %8d %12.1f %12.1f %12.1f %14.0f %14d", label, count,
+                    histogram.percentile(0.50) / 1e3, histogram.percentile(0.99) / 1e3, histogram.max() / 1e3,
+                    itemsPerSecond(), totalAllocated / count);
+        }
+
+        synchronized String json() {
+            return String.format(Locale.ROOT,
+                    "{\"label\": \"%s\", \"count\": %d, \"p50Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d, "
+                            + "\"totalNanos\": %d, \"items\": %d, \"itemsPerSecond\": %.1f, \"allocatedBytes\": %d}",
+                    label.replace("\\", "\\\\").replace("\"", "\\\""), count, histogram.percentile(0.50),
+                    histogram.percentile(0.99), histogram.max(), totalNanos, totalItems, itemsPerSecond(),
+                    totalAllocated);
+        }
+
+        private double itemsPerSecond() {
+            return totalNanos == 0 ? 0 : totalItems * 1e9 / totalNanos;
+        }
+    }
+
+    /**
+     * Log-linear histogram: 16 linear sub-buckets per power of two, so any recorded
+     * value is reported within ~6% of its true value with a fixed 1KB footprint.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+        private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+        private long total;
+        private long max;
+
+        void add(long value) {
+            value = Math.max(0, value);
+            counts[index(value)]++;
+            total++;
+            max = Math.max(max, value);
+        }
+
+        private static int index(long value) {
+            if (value < SUB) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+            return (exponent - SUB_BITS + 1) * SUB + sub;
+        }
+
+        // upper bound of the values that land in bucket i
+        private static long upperBound(int i) {
+            if (i < SUB) {
+                return i;
+            }
+            int exponent = i / SUB + SUB_BITS - 1;
+            long sub = i % SUB;
+            return ((SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+
+        long percentile(double q) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        long max() {
+            return max;
+        }
+    }
+}
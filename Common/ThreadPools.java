@@ -0,0 +1,55 @@
+package Common;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+One-thread-per-task executors for connection handlers
+-----------------------------------------------------
+- perTask() returns Executors.newVirtualThreadPerTaskExecutor() when the running
+  JDK has it (21+), looked up reflectively so the tree still builds on 17
+- On older JDKs it falls back to a cached pool of daemon platform threads with a
+  small (256KB) stack, so a few thousand blocked connections stay affordable
+*/
+
+public final class ThreadPools {
+    private static final long FALLBACK_STACK_SIZE = 256 * 1024;
+    private static final Method VIRTUAL = virtualFactory();
+
+    private ThreadPools() {
+    }
+
+    private static Method virtualFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /** Whether perTask() hands out virtual threads. */
+    public static boolean virtualThreads() {
+        return VIRTUAL != null;
+    }
+
+    /** An executor that starts a new thread for every submitted task. */
+    public static ExecutorService perTask(String namePrefix) {
+        if (VIRTUAL != null) {
+            try {
+                return (ExecutorService) VIRTUAL.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // fall through to platform threads
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(null, task, namePrefix + "-" + count.incrementAndGet(), FALLBACK_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+}
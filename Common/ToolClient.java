@@ -0,0 +1,108 @@
+package Common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Thin client for ToolDaemon
+--------------------------
+- Usage: java Common.ToolClient <tool> [args...]   (-Dtools.socket=<path> to pick a daemon)
+- Sends the arguments, forwards this process' stdin as it arrives, copies the
+  tool's stdout / stderr back and exits with the tool's exit code
+- With no daemon listening it runs the tool in this JVM instead (same result,
+  just without the warm start)
+- The client itself is a small JVM that loads none of the tools; run() is the
+  same exchange for callers that are already running in a JVM
+*/
+
+public final class ToolClient {
+    private ToolClient() {
+    }
+
+    /** A connection to the daemon at {@code socket}, or null if none is listening. */
+    public static SocketChannel connect(Path socket) {
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs {@code tool} in the daemon at {@code socket}.
+     *
+     * @return the tool's exit code
+     */
+    public static int run(Path socket, String tool, List<String> args, InputStream stdin, OutputStream stdout,
+            OutputStream stderr) throws IOException {
+        return run(SocketChannel.open(UnixDomainSocketAddress.of(socket)), tool, args, stdin, stdout, stderr);
+    }
+
+    /** Runs {@code tool} over {@code connection} and closes it. */
+    public static int run(SocketChannel connection, String tool, List<String> args, InputStream stdin,
+            OutputStream stdout, OutputStream stderr) throws IOException {
+        try (SocketChannel channel = connection) {
+            byte[] argv = ToolFrames.encodeArgs(tool, args);
+            ToolFrames.write(channel, ToolFrames.ARGS, argv, 0, argv.length);
+            Thread pump = new Thread(() -> pumpStdin(channel, stdin), "tool-client-stdin");
+            pump.setDaemon(true);
+            pump.start();
+            ToolFrames.Frame frame;
+            while ((frame = ToolFrames.read(channel)) != null) {
+                switch (frame.type) {
+                    case ToolFrames.STDOUT:
+                        stdout.write(frame.payload);
+                        stdout.flush();
+                        break;
+                    case ToolFrames.STDERR:
+                        stderr.write(frame.payload);
+                        stderr.flush();
+                        break;
+                    case ToolFrames.EXIT:
+                        return ByteBuffer.wrap(frame.payload).getInt();
+                    default:
+                        throw new IOException("unexpected frame " + (char) frame.type);
+                }
+            }
+            throw new IOException("daemon closed the connection without an exit code");
+        }
+    }
+
+    private static void pumpStdin(SocketChannel channel, InputStream stdin) {
+        byte[] buffer = new byte[8192];
+        try {
+            int n;
+            while ((n = stdin.read(buffer)) >= 0) {
+                synchronized (channel) {
+                    ToolFrames.write(channel, ToolFrames.STDIN, buffer, 0, n);
+                }
+            }
+            synchronized (channel) {
+                ToolFrames.write(channel, ToolFrames.STDIN_END, buffer, 0, 0);
+            }
+        } catch (IOException e) {
+            // the invocation finished and the daemon closed the connection
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java Common.ToolClient <tool> [args...]");
+            return;
+        }
+        List<String> toolArgs = Arrays.asList(args).subList(1, args.length);
+        SocketChannel channel = connect(ToolDaemon.defaultSocket());
+        int code = channel != null ? run(channel, args[0], toolArgs, System.in, System.out, System.err)
+                // no daemon: run it here
+                : ToolDaemon.invoke(args[0], toolArgs.toArray(new String[0]), System.in, System.out, System.err);
+        System.out.flush();
+        System.exit(code);
+    }
+}
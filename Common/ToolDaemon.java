@@ -0,0 +1,363 @@
+package Common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/*
+Resident JVM for the command-line tools
+---------------------------------------
+- Usage: java Common.ToolDaemon [socket] [--warm]
+  then:  java Common.ToolClient <tool> [args...]
+  tools: CommandLineCalculator, SlashCommandHandler, MadLibsGenerator,
+         Problem1..Problem4, Hello, Overflow (names are case-insensitive)
+- Listens on a Unix domain socket (default <tmp>/rps-tools-<user>.sock, or
+  -Dtools.socket); every connection is one invocation: the tool's main(args)
+  runs in this JVM with System.in / out / err swapped for streams that forward
+  to the client over ToolFrames, and the client gets the exit code (0, or 1 if
+  main threw, 2 for an unknown tool)
+- System.in / out / err are process-wide, so invocations run one at a time under
+  a fair lock; other clients wait their turn
+- Reading stdin when nothing is buffered first flushes stdout, so prompts show
+  up before the tool blocks, like on a terminal
+- Classes stay loaded and JIT-compiled between invocations; --warm runs every
+  tool once at startup with empty input
+- Relative paths (M3/stories, ...) resolve against the daemon's working
+  directory: start it from the repo root, like run.sh
+- Tools run in-process, so one calling System.exit stops the daemon, and
+  long-running modes (--server) hold the lock until they end
+*/
+
+public final class ToolDaemon {
+    private static final Map<String, String> TOOLS = tools();
+    private static final Map<String, MethodHandle> MAINS = new ConcurrentHashMap<>();
+    private static final ReentrantLock INVOKE = new ReentrantLock(true);
+    private static final int CHUNK = 8192;
+
+    private final ServerSocketChannel server;
+    private final Path socket;
+    private final ExecutorService connections = ThreadPools.perTask("tool-connection");
+
+    private static Map<String, String> tools() {
+        Map<String, String> tools = new LinkedHashMap<>();
+        for (String name : new String[] { "M3.CommandLineCalculator", "M3.SlashCommandHandler",
+                "M3.MadLibsGenerator", "M2.Problem1", "M2.Problem2", "M2.Problem3", "M2.Problem4", "Hello",
+                "Overflow" }) {
+            tools.put(name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT), name);
+        }
+        return Collections.unmodifiableMap(tools);
+    }
+
+    /** Class name of {@code tool}, or null if the daemon does not host it. */
+    public static String className(String tool) {
+        return TOOLS.get(tool.toLowerCase(Locale.ROOT));
+    }
+
+    /** Names of the hosted tools. */
+    public static List<String> toolNames() {
+        return TOOLS.values().stream().map(n -> n.substring(n.lastIndexOf('.') + 1)).collect(Collectors.toList());
+    }
+
+    public static Path defaultSocket() {
+        String configured = System.getProperty("tools.socket");
+        return configured != null ? Paths.get(configured)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "rps-tools-" + System.getProperty("user.name")
+                        + ".sock");
+    }
+
+    public ToolDaemon(Path socket) throws IOException {
+        this.socket = socket;
+        if (Files.exists(socket)) {
+            SocketChannel probe = ToolClient.connect(socket);
+            if (probe != null) {
+                probe.close();
+                throw new IOException("a tool daemon is already listening on " + socket);
+            }
+            // stale socket file from a daemon that did not shut down cleanly
+            Files.delete(socket);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+    }
+
+    /** Accepts invocations until the daemon is closed. */
+    public void serve() {
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> handle(channel));
+            }
+        } catch (IOException e) {
+            if (server.isOpen()) {
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+        Files.deleteIfExists(socket);
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            ToolFrames.Frame first = ToolFrames.read(channel);
+            if (first == null || first.type != ToolFrames.ARGS) {
+                return;
+            }
+            List<String> argv = ToolFrames.decodeArgs(first.payload);
+            FrameOutputStream stdout = new FrameOutputStream(channel, ToolFrames.STDOUT);
+            FrameOutputStream stderr = new FrameOutputStream(channel, ToolFrames.STDERR);
+            PrintStream out = new PrintStream(stdout, true);
+            PrintStream err = new PrintStream(stderr, true);
+            FrameInputStream in = new FrameInputStream(out);
+            connections.execute(() -> pumpStdin(channel, in));
+
+            int code = invoke(argv.get(0), argv.subList(1, argv.size()).toArray(new String[0]), in, out, err);
+            out.flush();
+            err.flush();
+            synchronized (channel) {
+                ToolFrames.writeInt(channel, ToolFrames.EXIT, code);
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private static void pumpStdin(SocketChannel channel, FrameInputStream in) {
+        try {
+            ToolFrames.Frame frame;
+            while ((frame = ToolFrames.read(channel)) != null) {
+                if (frame.type == ToolFrames.STDIN) {
+                    in.feed(frame.payload);
+                } else if (frame.type == ToolFrames.STDIN_END) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // connection closed: treat as end of input
+        } finally {
+            in.end();
+        }
+    }
+
+    /**
+     * Runs {@code tool}'s main with the given standard streams, one invocation at a time.
+     *
+     * @return exit code: 0, 1 if main threw, 2 if there is no such tool
+     */
+    public static int invoke(String tool, String[] args, InputStream in, PrintStream out, PrintStream err) {
+        String className = className(tool);
+        if (className == null) {
+            err.println("Unknown tool " + tool + "; available: " + String.join(", ", toolNames()));
+            return 2;
+        }
+        INVOKE.lock();
+        InputStream savedIn = System.in;
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        try {
+            System.setIn(in);
+            System.setOut(out);
+            System.setErr(err);
+            MethodHandle main = MAINS.computeIfAbsent(className, ToolDaemon::findMain);
+            main.invokeExact(args);
+            return 0;
+        } catch (Throwable t) {
+            t.printStackTrace(err);
+            return 1;
+        } finally {
+            out.flush();
+            err.flush();
+            System.setIn(savedIn);
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+            INVOKE.unlock();
+        }
+    }
+
+    private static MethodHandle findMain(String className) {
+        try {
+            Class<?> type = Class.forName(className);
+            return MethodHandles.publicLookup().findStatic(type, "main",
+                    MethodType.methodType(void.class, String[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot load " + className, e);
+        }
+    }
+
+    /** Runs every tool once with no input and discarded output, so later calls find them loaded. */
+    public static void warm() {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        for (String tool : toolNames()) {
+            invoke(tool, new String[0], InputStream.nullInputStream(), discard, discard);
+        }
+    }
+
+    /** Buffers output and sends it as frames on flush or when the buffer is full. */
+    private static final class FrameOutputStream extends OutputStream {
+        private final SocketChannel channel;
+        private final byte type;
+        private final byte[] buffer = new byte[CHUNK];
+        private int length;
+
+        FrameOutputStream(SocketChannel channel, byte type) {
+            this.channel = channel;
+            this.type = type;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (length == buffer.length) {
+                flush();
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int count) throws IOException {
+            if (count >= buffer.length) {
+                flush();
+                send(bytes, offset, count);
+                return;
+            }
+            if (length + count > buffer.length) {
+                flush();
+            }
+            System.arraycopy(bytes, offset, buffer, length, count);
+            length += count;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (length > 0) {
+                send(buffer, 0, length);
+                length = 0;
+            }
+        }
+
+        private void send(byte[] bytes, int offset, int count) throws IOException {
+            synchronized (channel) {
+                ToolFrames.write(channel, type, bytes, offset, count);
+            }
+        }
+    }
+
+    /** Standard input fed by STDIN frames; flushes stdout before it has to wait. */
+    private static final class FrameInputStream extends InputStream {
+        private static final byte[] END = new byte[0];
+        private final LinkedBlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        private final PrintStream out;
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean ended;
+
+        FrameInputStream(PrintStream out) {
+            this.out = out;
+        }
+
+        void feed(byte[] chunk) {
+            if (chunk.length > 0) {
+                chunks.add(chunk);
+            }
+        }
+
+        void end() {
+            chunks.add(END);
+        }
+
+        private boolean fill() throws IOException {
+            while (position == current.length) {
+                if (ended) {
+                    return false;
+                }
+                byte[] next = chunks.poll();
+                if (next == null) {
+                    out.flush();
+                    try {
+                        next = chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (next == END) {
+                    ended = true;
+                    return false;
+                }
+                current = next;
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            return fill() ? current[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public synchronized int read(byte[] bytes, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(count, current.length - position);
+            System.arraycopy(current, position, bytes, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return current.length - position;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> options = Arrays.asList(args);
+        Path socket = args.length > 0 && !args[0].startsWith("--") ? Paths.get(args[0]) : defaultSocket();
+        if (options.contains("--warm")) {
+            long start = System.nanoTime();
+            warm();
+            System.out.println(String.format("Warmed %d tools in %.1f ms", TOOLS.size(),
+                    (System.nanoTime() - start) / 1e6));
+        }
+        ToolDaemon daemon = new ToolDaemon(socket);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // exiting anyway
+            }
+        }));
+        System.out.println("Tool daemon on " + socket + " hosting " + String.join(", ", toolNames()));
+        daemon.serve();
+    }
+}
@@ -0,0 +1,115 @@
+package Common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Wire format between ToolClient and ToolDaemon
+---------------------------------------------
+- Every message is a frame: byte type | int length | payload (big-endian)
+- client -> daemon: ARGS once (tool name and arguments), then STDIN chunks and
+  finally STDIN_END
+- daemon -> client: STDOUT / STDERR chunks, then EXIT with the int exit code
+- Frames are read and written with plain channel reads and gathering writes, so
+  one thread can block reading a connection while another writes to it
+*/
+
+final class ToolFrames {
+    static final byte ARGS = 'A';
+    static final byte STDIN = 'I';
+    static final byte STDIN_END = 'E';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'R';
+    static final byte EXIT = 'X';
+    static final int MAX_FRAME = 1 << 24;
+
+    private ToolFrames() {
+    }
+
+    static final class Frame {
+        final byte type;
+        final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /** Reads the next frame; null at end of stream. */
+    static Frame read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(5);
+        if (!fill(channel, header, true)) {
+            return null;
+        }
+        int length = header.getInt(1);
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("bad frame length " + length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        fill(channel, payload, false);
+        return new Frame(header.get(0), payload.array());
+    }
+
+    private static boolean fill(ReadableByteChannel channel, ByteBuffer buffer, boolean eofAllowed)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (eofAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+
+    /** Writes one frame; callers writing from several threads synchronize on the channel. */
+    static void write(GatheringByteChannel channel, byte type, byte[] bytes, int offset, int length)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(5).put(type).putInt(length);
+        header.flip();
+        ByteBuffer[] buffers = { header, ByteBuffer.wrap(bytes, offset, length) };
+        while (buffers[1].hasRemaining() || header.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    static void writeInt(GatheringByteChannel channel, byte type, int value) throws IOException {
+        byte[] bytes = ByteBuffer.allocate(4).putInt(value).array();
+        write(channel, type, bytes, 0, 4);
+    }
+
+    static byte[] encodeArgs(String tool, List<String> args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(args.size() + 1);
+            out.writeUTF(tool);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Tool name first, then its arguments. */
+    static List<String> decodeArgs(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int count = in.readInt();
+            List<String> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                args.add(in.readUTF());
+            }
+            return args;
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package M2;
 
+import Common.ConsoleWriter;
+import Common.RunMetrics;
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
 
 public class BaseClass {
     public enum Color {
@@ -27,7 +26,9 @@ public class BaseClass {
         }
     }
 
-    public static final String RESET = "\033[0m";
+    public static final String RESET = ConsoleWriter.RESET;
+
+    private static final StackWalker STACK = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
 
     /**
      * Generates a String with the original message wrapped in the ASCII of the
@@ -41,35 +42,45 @@ public class BaseClass {
      * chatroom projects.
      * </p>
      * 
+     * <p>
+     * Returns {@code text} unchanged when color is turned off (see
+     * {@link ConsoleWriter}).
+     * </p>
+     * 
      * @param text  Input text to colorize
      * @param color Enum of Color choice from TextFX.Color
      * @return wrapped String
      */
     public static String colorize(String text, Color color) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(color.getCode());
-        builder.append(text);
-        builder.append(RESET);
-        return builder.toString();
+        if (!ConsoleWriter.colorEnabled()) {
+            return text;
+        }
+        return color.getCode() + text + RESET;
     }
 
     public static void printHeader(String ucid, int problem) {
+        // header/footer bracket every run, so they also start/stop its timing
+        if (RunMetrics.enabled()) {
+            RunMetrics.begin(STACK.getCallerClass().getName());
+        }
         LocalDateTime currentDT = LocalDateTime.now();
-        System.out.println(
-                colorize(String.format("Running Problem %d for [%s] [%s]", problem, ucid, currentDT), Color.PURPLE));
+        ConsoleWriter out = ConsoleWriter.out();
+        out.colored(String.format("Running Problem %d for [%s] [%s]", problem, ucid, currentDT), Color.PURPLE.getCode())
+                .newLine();
         switch (problem) {
             case 1:
-                System.out.println("Objective: Print out only odd values in a single line separate by commas");
+                out.append("Objective: Print out only odd values in a single line separate by commas").newLine();
                 break;
             case 2:
-                System.out.println("Objective: Print out the total sum of the passed array");
+                out.append("Objective: Print out the total sum of the passed array").newLine();
                 break;
             case 3:
-                System.out.println(
-                        "Objective: Make each array value positive, convert it back to the original data type, and assign it to the proper slot in the `output` array");
+                out.append(
+                        "Objective: Make each array value positive, convert it back to the original data type, and assign it to the proper slot in the `output` array")
+                        .newLine();
                 break;
             case 4:
-                System.out.println(
+                out.append(
                         "Objective: \n" +
                                 "Challenge 1: Remove non-alphanumeric characters except spaces\n" +
                                 "Challenge 2: Convert text to Title Case\n" +
@@ -77,58 +88,95 @@ public class BaseClass {
                                 "Result 1-3: Assign final phrase to `placeholderForModifiedPhrase`\n" +
                                 "Challenge 4: Extract middle 3 characters (beginning starts at middle of phrase),\n" +
                                 "assign to 'placeholderForMiddleCharacters'\n" +
-                                "if not enough characters assign \"Not enough characters\"");
+                                "if not enough characters assign \"Not enough characters\"")
+                        .newLine();
                 break;
             default:
                 break;
         }
+        out.flush();
     }
 
     public static void printFooter(String ucid, int problem) {
+        RunMetrics.end();
         LocalDateTime currentDT = LocalDateTime.now();
-        System.out.println(
-                colorize(String.format("Completed Problem %d for [%s] [%s]", problem, ucid, currentDT), Color.PURPLE));
+        ConsoleWriter out = ConsoleWriter.out();
+        out.colored(String.format("Completed Problem %d for [%s] [%s]", problem, ucid, currentDT), Color.PURPLE.getCode())
+                .newLine();
+        out.flush();
     }
 
     // overloads
+    // each element is appended straight into the shared buffer instead of going
+    // through Arrays.toString + String.format + colorize
     public static void printArrayInfo(int[] arr, int arrayNumber) {
-        final String message = String.format("Problem %s: Original Array: %s", arrayNumber, Arrays.toString(arr));
-        System.out.println(colorize(message, Color.BLUE));
+        RunMetrics.segment("array " + arrayNumber, arr.length);
+        ConsoleWriter out = ConsoleWriter.out();
+        out.color(Color.BLUE.getCode()).append("Problem ").append(arrayNumber).append(": Original Array: [");
+        for (int i = 0; i < arr.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(arr[i]);
+        }
+        out.append(']').reset().newLine();
+        out.flush();
     }
 
     public static void printArrayInfo(double[] arr, int arrayNumber) {
-        final String message = String.format("Problem %s: Original Array: %s", arrayNumber, Arrays.toString(arr));
-        System.out.println(colorize(message, Color.BLUE));
+        RunMetrics.segment("array " + arrayNumber, arr.length);
+        ConsoleWriter out = ConsoleWriter.out();
+        out.color(Color.BLUE.getCode()).append("Problem ").append(arrayNumber).append(": Original Array: [");
+        for (int i = 0; i < arr.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(Double.toString(arr[i]));
+        }
+        out.append(']').reset().newLine();
+        out.flush();
     }
 
     public static void printArrayInfo(Object[] arr, int arrayNumber) {
-        final String message = String.format("Problem %s: Original Array:", arrayNumber);
-        System.out.println(colorize(message, Color.BLUE));
-        System.out.print(Color.BLUE.getCode());
-        printOutputWithType(arr);
-
-        System.out.println(RESET);
+        RunMetrics.segment("array " + arrayNumber, arr.length);
+        ConsoleWriter out = ConsoleWriter.out();
+        out.colored("Problem " + arrayNumber + ": Original Array:", Color.BLUE.getCode()).newLine();
+        out.color(Color.BLUE.getCode());
+        appendWithType(out, arr);
+        out.reset().newLine();
+        out.flush();
     }
 
     public static void printArrayInfoBasic(String[] arr, int arrayNumber) {
-        final String message = String.format("Problem %s: Original Array: %s", arrayNumber, Arrays.toString(arr));
-        System.out.println(colorize(message, Color.BLUE));
+        RunMetrics.segment("array " + arrayNumber, arr.length);
+        ConsoleWriter out = ConsoleWriter.out();
+        out.color(Color.BLUE.getCode()).append("Problem ").append(arrayNumber).append(": Original Array: [");
+        for (int i = 0; i < arr.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(arr[i]);
+        }
+        out.append(']').reset().newLine();
+        out.flush();
     }
 
     public static void printOutputWithType(Object[] arr) {
-        List<Object> list = Arrays.asList(arr); // Handles null values safely
-        Iterator<Object> iterator = list.iterator();
+        ConsoleWriter out = ConsoleWriter.out();
+        appendWithType(out, arr);
+        out.flush();
+    }
 
-        while (iterator.hasNext()) {
-            Object item = iterator.next();
+    private static void appendWithType(ConsoleWriter out, Object[] arr) {
+        for (int i = 0; i < arr.length; i++) {
+            Object item = arr[i];
             if (item == null) {
-                System.out.println(colorize("Invalid value for output array", Color.RED));
+                out.colored("Invalid value for output array", Color.RED.getCode()).newLine();
                 continue;
             }
-            String o = String.format("%s[%s]", item, item.getClass().getSimpleName().substring(0, 1));
-            System.out.print(o);
-            if (iterator.hasNext()) {
-                System.out.print(", "); // Not last element, add separator
+            out.append(item).append('[').append(ConsoleWriter.typeTag(item)).append(']');
+            if (i < arr.length - 1) {
+                out.append(", "); // Not last element, add separator
             }
         }
     }
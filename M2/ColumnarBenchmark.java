@@ -0,0 +1,115 @@
+package M2;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/*
+Heap and throughput: original bePositive loop vs ColumnarNumbers
+----------------------------------------------------------------
+- Usage: java M2.ColumnarBenchmark [size] [rounds]
+- Builds the same mixed Integer/Double/Float data twice: boxed in an Object[]
+  and directly in columns (no boxing at all)
+- Reports retained heap of each representation and, per round, the time and
+  bytes allocated by the calling thread for the abs transform
+*/
+
+public class ColumnarBenchmark extends BaseClass {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // original Problem3 loop for the numeric types
+    private static Object[] originalLoop(Object[] arr) {
+        Object[] output = new Object[arr.length];
+        for (int index = 0; index < arr.length; index++) {
+            Object element = arr[index];
+            if (element instanceof Integer) {
+                output[index] = Math.abs((Integer) element);
+            } else if (element instanceof Double) {
+                output[index] = Math.abs((Double) element);
+            } else if (element instanceof Float) {
+                output[index] = Math.abs((Float) element);
+            } else {
+                output[index] = element;
+            }
+        }
+        return output;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long tid = Thread.currentThread().getId();
+
+        long before = usedHeap();
+        Object[] boxed = new Object[size];
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+                case 0:
+                    boxed[i] = random.nextInt(-1_000_000, 1_000_000);
+                    break;
+                case 1:
+                    boxed[i] = random.nextDouble(-1e6, 1e6);
+                    break;
+                default:
+                    boxed[i] = (float) random.nextDouble(-1e3, 1e3);
+                    break;
+            }
+        }
+        long boxedHeap = usedHeap() - before;
+
+        before = usedHeap();
+        ColumnarNumbers columns = new ColumnarNumbers(size);
+        random = new SplittableRandom(3);
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+                case 0:
+                    columns.setInt(i, random.nextInt(-1_000_000, 1_000_000));
+                    break;
+                case 1:
+                    columns.setDouble(i, random.nextDouble(-1e6, 1e6));
+                    break;
+                default:
+                    columns.setFloat(i, (float) random.nextDouble(-1e3, 1e3));
+                    break;
+            }
+        }
+        long columnarHeap = usedHeap() - before;
+
+        System.out.println(colorize(String.format("ColumnarNumbers benchmark: %,d elements, %d rounds", size, rounds),
+                Color.PURPLE));
+        System.out.println(String.format("retained heap: Object[] %,d MB | columns %,d MB",
+                boxedHeap >> 20, columnarHeap >> 20));
+
+        for (int r = 0; r < rounds; r++) {
+            long alloc = THREADS.getThreadAllocatedBytes(tid);
+            long start = System.nanoTime();
+            Object[] output = originalLoop(boxed);
+            long original = System.nanoTime() - start;
+            long originalAlloc = THREADS.getThreadAllocatedBytes(tid) - alloc;
+
+            alloc = THREADS.getThreadAllocatedBytes(tid);
+            start = System.nanoTime();
+            columns.absInPlace();
+            long columnar = System.nanoTime() - start;
+            long columnarAlloc = THREADS.getThreadAllocatedBytes(tid) - alloc;
+
+            if (!output[size - 1].equals(columns.box(size - 1))) {
+                throw new IllegalStateException("results differ");
+            }
+            System.out.println(String.format(
+                    "round %d: original %7.1f ms, %,6d MB allocated | columnar %6.1f ms, %,6d KB allocated | %.1fx",
+                    r + 1, original / 1e6, originalAlloc >> 20, columnar / 1e6, columnarAlloc >> 10,
+                    (double) original / columnar));
+        }
+    }
+}
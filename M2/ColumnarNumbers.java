@@ -0,0 +1,152 @@
+package M2;
+
+import java.util.stream.IntStream;
+
+/*
+Columnar, boxing-free form of Problem3's mixed Object[] arrays
+---------------------------------------------------------------
+- One byte type tag per element plus primitive columns:
+  Integer -> long column, Double and Float -> double column (float widens exactly)
+- String and any other element keep a reference in a side column that is only
+  allocated when such elements exist
+- absInPlace() runs Math.abs over each primitive column with a plain loop; slots
+  that belong to the other column hold 0, so no per-element type check is needed
+- Large arrays are transformed in parallel chunks
+- Boxing only happens at the edge (box / copyInto) for printOutputWithType
+*/
+
+public final class ColumnarNumbers {
+    public static final byte TAG_OTHER = 0;
+    public static final byte TAG_INTEGER = 1;
+    public static final byte TAG_DOUBLE = 2;
+    public static final byte TAG_FLOAT = 3;
+    public static final byte TAG_STRING = 4;
+
+    // elements per parallel chunk
+    static final int CHUNK = 1 << 16;
+
+    private final byte[] tags;
+    private final long[] longs;
+    private final double[] doubles;
+    private Object[] refs;
+
+    public ColumnarNumbers(int length) {
+        tags = new byte[length];
+        longs = new long[length];
+        doubles = new double[length];
+    }
+
+    /** Converts a boxed mixed array into columns. */
+    public static ColumnarNumbers from(Object[] arr) {
+        ColumnarNumbers columns = new ColumnarNumbers(arr.length);
+        for (int i = 0; i < arr.length; i++) {
+            Object element = arr[i];
+            if (element instanceof Integer) {
+                columns.setInt(i, (Integer) element);
+            } else if (element instanceof Double) {
+                columns.setDouble(i, (Double) element);
+            } else if (element instanceof Float) {
+                columns.setFloat(i, (Float) element);
+            } else {
+                columns.setReference(i, element);
+            }
+        }
+        return columns;
+    }
+
+    public int length() {
+        return tags.length;
+    }
+
+    public byte tag(int i) {
+        return tags[i];
+    }
+
+    public void setInt(int i, int value) {
+        tags[i] = TAG_INTEGER;
+        longs[i] = value;
+    }
+
+    public void setDouble(int i, double value) {
+        tags[i] = TAG_DOUBLE;
+        doubles[i] = value;
+    }
+
+    public void setFloat(int i, float value) {
+        tags[i] = TAG_FLOAT;
+        doubles[i] = value;
+    }
+
+    /** Stores a String (or any non-numeric element) in the side column. */
+    public void setReference(int i, Object value) {
+        if (refs == null) {
+            refs = new Object[tags.length];
+        }
+        tags[i] = value instanceof String ? TAG_STRING : TAG_OTHER;
+        refs[i] = value;
+    }
+
+    /** Makes every element non-negative, keeping its original type. */
+    public ColumnarNumbers absInPlace() {
+        int chunks = (tags.length + CHUNK - 1) / CHUNK;
+        if (chunks <= 1) {
+            absRange(0, tags.length);
+        } else {
+            IntStream.range(0, chunks).parallel()
+                    .forEach(c -> absRange(c * CHUNK, Math.min(tags.length, (c + 1) * CHUNK)));
+        }
+        return this;
+    }
+
+    private void absRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            longs[i] = Math.abs(longs[i]);
+        }
+        for (int i = from; i < to; i++) {
+            doubles[i] = Math.abs(doubles[i]);
+        }
+        if (refs != null) {
+            for (int i = from; i < to; i++) {
+                if (tags[i] == TAG_STRING) {
+                    refs[i] = absText((String) refs[i]);
+                }
+            }
+        }
+    }
+
+    // same rules Problem3 uses for String elements
+    private static String absText(String text) {
+        if (text.contains(".")) {
+            return String.valueOf(Math.abs(Double.parseDouble(text)));
+        }
+        return String.valueOf(Math.abs(Integer.parseInt(text)));
+    }
+
+    /** Boxes element {@code i} back into its original wrapper type. */
+    public Object box(int i) {
+        switch (tags[i]) {
+            case TAG_INTEGER:
+                // (int) keeps Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE like the boxed path
+                return (int) longs[i];
+            case TAG_DOUBLE:
+                return doubles[i];
+            case TAG_FLOAT:
+                return (float) doubles[i];
+            default:
+                return refs == null ? null : refs[i];
+        }
+    }
+
+    /** Boxes every element into {@code output}, which must be at least {@link #length()} long. */
+    public void copyInto(Object[] output) {
+        for (int i = 0; i < tags.length; i++) {
+            output[i] = box(i);
+        }
+    }
+
+    public Object[] toObjectArray() {
+        Object[] output = new Object[tags.length];
+        copyInto(output);
+        return output;
+    }
+}
@@ -0,0 +1,108 @@
+package M2;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+Compensated summation engine used by Problem2.sumValues
+-------------------------------------------------------
+- Uses Neumaier's variant of Kahan summation so values like
+  {1e16, 1.0, -1e16} keep the 1.0 that a plain `total += number` loses
+- Large arrays are split into fixed size chunks and summed with fork-join
+- Chunk boundaries and the order partial sums are combined in depend only on
+  the array length, never on the number of threads, so the result is the same
+  bit-for-bit on 1 core or 64
+*/
+
+public final class CompensatedSum {
+    // fixed split granularity; must not depend on parallelism (see header)
+    static final int CHUNK = 1 << 14;
+
+    private CompensatedSum() {
+    }
+
+    /**
+     * Running Neumaier sum. {@link #value()} is the compensated total.
+     */
+    public static final class Accumulator {
+        private double sum;
+        private double compensation;
+
+        public void add(double x) {
+            double t = sum + x;
+            if (Math.abs(sum) >= Math.abs(x)) {
+                compensation += (sum - t) + x;
+            } else {
+                compensation += (x - t) + sum;
+            }
+            sum = t;
+        }
+
+        /** Folds another accumulator into this one. */
+        public void add(Accumulator other) {
+            add(other.sum);
+            compensation += other.compensation;
+        }
+
+        public void reset() {
+            sum = 0;
+            compensation = 0;
+        }
+
+        public double value() {
+            return sum + compensation;
+        }
+    }
+
+    /** Sums {@code arr} on the common fork-join pool. */
+    public static double sum(double[] arr) {
+        return sum(arr, ForkJoinPool.commonPool());
+    }
+
+    /** Sums {@code arr} on {@code pool}; the result does not depend on the pool size. */
+    public static double sum(double[] arr, ForkJoinPool pool) {
+        if (arr.length <= CHUNK) {
+            return sumRange(arr, 0, arr.length).value();
+        }
+        return pool.invoke(new SumTask(arr, 0, arr.length)).value();
+    }
+
+    /** Sequential compensated sum of {@code arr[from, to)}. */
+    static Accumulator sumRange(double[] arr, int from, int to) {
+        Accumulator acc = new Accumulator();
+        for (int i = from; i < to; i++) {
+            acc.add(arr[i]);
+        }
+        return acc;
+    }
+
+    private static final class SumTask extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+        private final double[] arr;
+        private final int from;
+        private final int to;
+
+        SumTask(double[] arr, int from, int to) {
+            this.arr = arr;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            int chunks = (to - from + CHUNK - 1) / CHUNK;
+            if (chunks <= 1) {
+                return sumRange(arr, from, to);
+            }
+            // split on a chunk boundary so the tree shape is a function of length only
+            int mid = from + (chunks / 2) * CHUNK;
+            SumTask left = new SumTask(arr, from, mid);
+            SumTask right = new SumTask(arr, mid, to);
+            left.fork();
+            Accumulator r = right.compute();
+            Accumulator l = left.join();
+            l.add(r);
+            return l;
+        }
+    }
+}
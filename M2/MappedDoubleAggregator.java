@@ -0,0 +1,208 @@
+package M2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/*
+Streaming aggregates over binary double files (Problem2 streaming mode)
+-----------------------------------------------------------------------
+- Memory-maps the file region by region with FileChannel.map, so files far larger
+  than the heap are read in a single pass without copying into a double[]
+- Running aggregates over everything seen so far: count, sum, mean, min, max, variance
+- Sliding window aggregates over the last `window` values: sum, mean, min, max, variance
+- Sums use the same CompensatedSum accumulator as Problem2.sumValues
+- Heap usage is constant: one ring buffer and two index deques sized to the window
+- Values are printed with "%.2f", the same format as `modifiedTotal`
+- Usage: java M2.MappedDoubleAggregator <file> [window] [reportEvery] [--little-endian]
+         java M2.MappedDoubleAggregator --generate <file> <count>
+*/
+
+public class MappedDoubleAggregator extends BaseClass {
+    // bytes mapped at a time; a multiple of Double.BYTES and well under the 2GB map limit
+    static final long REGION = 1L << 28;
+
+    private final int window;
+    // running (whole stream)
+    private final CompensatedSum.Accumulator sum = new CompensatedSum.Accumulator();
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double mean;
+    private double m2;
+    // sliding window
+    private final double[] ring;
+    private final CompensatedSum.Accumulator windowSum = new CompensatedSum.Accumulator();
+    private double windowMean;
+    private double windowM2;
+    // monotonic deques of stream positions; the front holds the window min / max
+    private final long[] minDeque;
+    private final long[] maxDeque;
+    private int minHead, minSize, maxHead, maxSize;
+
+    public MappedDoubleAggregator(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        this.window = window;
+        this.ring = new double[window];
+        this.minDeque = new long[window];
+        this.maxDeque = new long[window];
+    }
+
+    /** Feeds the next value of the stream. */
+    public void accept(double x) {
+        long position = count;
+        count++;
+        sum.add(x);
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+        // Welford's update keeps variance stable in one pass
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+
+        int slot = (int) (position % window);
+        if (position >= window) {
+            double old = ring[slot];
+            windowSum.add(-old);
+            int n = window - 1;
+            if (n == 0) {
+                windowMean = 0;
+                windowM2 = 0;
+            } else {
+                double d = old - windowMean;
+                windowMean -= d / n;
+                windowM2 -= d * (old - windowMean);
+            }
+        }
+        ring[slot] = x;
+        int n = windowCount();
+        windowSum.add(x);
+        double d = x - windowMean;
+        windowMean += d / n;
+        windowM2 += d * (x - windowMean);
+
+        long oldest = position - window + 1;
+        // drop positions that slid out, then values the new one dominates
+        if (minSize > 0 && minDeque[minHead] < oldest) {
+            minHead = (minHead + 1) % window;
+            minSize--;
+        }
+        while (minSize > 0 && ring[slotOf(minDeque[(minHead + minSize - 1) % window])] >= x) {
+            minSize--;
+        }
+        minDeque[(minHead + minSize++) % window] = position;
+        if (maxSize > 0 && maxDeque[maxHead] < oldest) {
+            maxHead = (maxHead + 1) % window;
+            maxSize--;
+        }
+        while (maxSize > 0 && ring[slotOf(maxDeque[(maxHead + maxSize - 1) % window])] <= x) {
+            maxSize--;
+        }
+        maxDeque[(maxHead + maxSize++) % window] = position;
+    }
+
+    private int slotOf(long position) {
+        return (int) (position % window);
+    }
+
+    private int windowCount() {
+        return (int) Math.min(count, window);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public String runningSummary() {
+        return String.format("count=%d sum=%.2f mean=%.2f min=%.2f max=%.2f variance=%.2f",
+                count, sum.value(), count == 0 ? 0.0 : sum.value() / count, min, max,
+                count < 2 ? 0.0 : m2 / (count - 1));
+    }
+
+    public String windowSummary() {
+        int n = windowCount();
+        double wmin = minSize == 0 ? Double.NaN : ring[slotOf(minDeque[minHead])];
+        double wmax = maxSize == 0 ? Double.NaN : ring[slotOf(maxDeque[maxHead])];
+        return String.format("window=%d sum=%.2f mean=%.2f min=%.2f max=%.2f variance=%.2f",
+                n, windowSum.value(), n == 0 ? 0.0 : windowSum.value() / n, wmin, wmax,
+                n < 2 ? 0.0 : Math.max(0, windowM2) / (n - 1));
+    }
+
+    /**
+     * Streams every double in {@code file} through {@code aggregator}, printing the
+     * window summary every {@code reportEvery} values (0 to disable).
+     */
+    public static void aggregate(Path file, ByteOrder order, MappedDoubleAggregator aggregator, long reportEvery)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size() - channel.size() % Double.BYTES;
+            for (long offset = 0; offset < size; offset += REGION) {
+                long length = Math.min(REGION, size - offset);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                DoubleBuffer values = region.order(order).asDoubleBuffer();
+                while (values.hasRemaining()) {
+                    aggregator.accept(values.get());
+                    if (reportEvery > 0 && aggregator.count() % reportEvery == 0) {
+                        System.out.println("@" + aggregator.count() + " " + aggregator.windowSummary());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void generate(Path file, long count) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long i = 0; i < count; i++) {
+                if (buffer.remaining() < Double.BYTES) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.putDouble(random.nextDouble(-1000, 1000));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--generate")) {
+            generate(Paths.get(args[1]), Long.parseLong(args[2]));
+            return;
+        }
+        if (args.length < 1) {
+            System.out.println("Usage: java M2.MappedDoubleAggregator <file> [window] [reportEvery] [--little-endian]");
+            System.out.println("       java M2.MappedDoubleAggregator --generate <file> <count>");
+            return;
+        }
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long reportEvery = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        ByteOrder order = args.length > 3 && args[3].equals("--little-endian") ? ByteOrder.LITTLE_ENDIAN
+                : ByteOrder.BIG_ENDIAN;
+
+        MappedDoubleAggregator aggregator = new MappedDoubleAggregator(window);
+        long start = System.nanoTime();
+        aggregate(Paths.get(args[0]), order, aggregator, reportEvery);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(colorize("Running: " + aggregator.runningSummary(), Color.BLUE));
+        System.out.println(colorize("Last " + aggregator.windowSummary(), Color.BLUE));
+        System.out.println(String.format("Processed %,d values in %.1f ms", aggregator.count(), elapsed / 1e6));
+    }
+}
@@ -0,0 +1,125 @@
+package M2;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+Bulk absolute value for numeric text (Problem3 String elements, CSV columns)
+---------------------------------------------------------------------------
+- Problem3 parses each numeric String, takes Math.abs and formats it again, which
+  allocates three objects per cell and changes the text ("0.00001" -> "1.0E-5")
+- The absolute value of a number written in text is the same text without its
+  leading '-', so this mode never parses: it streams the bytes through one
+  reusable ByteBuffer and drops a '-' that starts a field and is followed by a
+  digit or '.'
+- Everything else (other fields, quotes, spacing, exponents, line endings) is
+  written back byte for byte
+- Bytes are compacted in place inside the same buffer that was read into, so
+  there is no second buffer and no per-cell allocation
+- Usage: java M2.NumericTextAbs <in|-> <out|-> [delimiter]
+*/
+
+public final class NumericTextAbs {
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private NumericTextAbs() {
+    }
+
+    private static boolean isNumberStart(byte b) {
+        return (b >= '0' && b <= '9') || b == '.';
+    }
+
+    /**
+     * Streams {@code in} to {@code out}, removing the sign of negative numeric
+     * fields. {@code buffer} is cleared and reused for every read.
+     *
+     * @return number of signs removed
+     */
+    public static long transform(ReadableByteChannel in, WritableByteChannel out, byte delimiter, ByteBuffer buffer)
+            throws IOException {
+        if (buffer.capacity() < 2) {
+            // one byte may be held back between reads, so a read needs room for another
+            throw new IllegalArgumentException("buffer must hold at least 2 bytes");
+        }
+        long removed = 0;
+        // true while still in the leading run (spaces / opening quote) of a field
+        boolean fieldStart = true;
+        buffer.clear();
+        boolean eof = false;
+        while (!eof) {
+            eof = in.read(buffer) < 0;
+            int limit = buffer.position();
+            int write = 0;
+            int read = 0;
+            for (; read < limit; read++) {
+                byte b = buffer.get(read);
+                if (fieldStart && b == '-') {
+                    if (read + 1 == limit && !eof) {
+                        // need the next byte to decide; keep the '-' for the next read
+                        break;
+                    }
+                    if (read + 1 < limit && isNumberStart(buffer.get(read + 1))) {
+                        removed++;
+                        fieldStart = false;
+                        continue;
+                    }
+                }
+                buffer.put(write++, b);
+                if (b == delimiter || b == '\n' || b == '\r') {
+                    fieldStart = true;
+                } else if (b != ' ' && b != '"') {
+                    fieldStart = false;
+                }
+            }
+            // emit [0, write) and move the undecided tail (at most one byte) to the front
+            buffer.position(0).limit(write);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.limit(buffer.capacity()).position(0);
+            for (int i = read; i < limit; i++) {
+                buffer.put(buffer.get(i));
+            }
+        }
+        return removed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java M2.NumericTextAbs <in|-> <out|-> [delimiter]");
+            return;
+        }
+        byte delimiter = args.length > 2 ? (byte) args[2].charAt(0) : (byte) ',';
+        boolean files = !args[0].equals("-") && !args[1].equals("-");
+        ReadableByteChannel in = args[0].equals("-") ? Channels.newChannel(new FileInputStream(FileDescriptor.in))
+                : FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ);
+        WritableByteChannel out = args[1].equals("-")
+                ? Channels.newChannel(new FileOutputStream(FileDescriptor.out))
+                : FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        long start = System.nanoTime();
+        long removed;
+        try {
+            removed = transform(in, out, delimiter, ByteBuffer.allocateDirect(BUFFER_SIZE));
+        } finally {
+            in.close();
+            out.close();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (files) {
+            long bytes = Files.size(Paths.get(args[0]));
+            System.out.println(String.format("Made %,d values non-negative, %,d bytes in %.1f ms (%.1f MB/s)",
+                    removed, bytes, elapsed / 1e6, bytes / 1.048576 / (elapsed / 1e3)));
+        }
+    }
+}
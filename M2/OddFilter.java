@@ -0,0 +1,264 @@
+package M2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+Odd value filter engine used by Problem1.printOdds
+--------------------------------------------------
+- Selects the odd values of an int[] into a compact scratch block without branching
+  on the parity test (the selected index only advances when the value is odd)
+- Formats the selected values straight into a reusable byte buffer as ASCII
+- Hands each full buffer to the OutputStream in one write instead of one
+  System.out.print (lock + flush) per element
+- Output is identical to the original loop: values separated by "," with no
+  trailing comma and no newline
+- The OffHeapInts overloads copy BLOCK ints at a time out of the off-heap sequence
+  and run the same selection; the threaded writeOdds formats SEGMENT-sized ranges
+  on workers into a fixed set of reusable buffers and writes them in input order
+*/
+
+public final class OddFilter {
+    // number of input elements selected per pass; keeps the scratch block in L1/L2
+    static final int BLOCK = 4096;
+    // an int needs at most 11 chars ("-2147483648") plus the separator
+    private static final int MAX_INT_CHARS = 12;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // ints per writeOdds work unit; its worst-case text (12 bytes per int) stays under 512KB
+    static final int SEGMENT = 32 * 1024;
+    private static final byte[] MIN_VALUE_TEXT = { '-', '2', '1', '4', '7', '4', '8', '3', '6', '4', '8' };
+
+    private OddFilter() {
+    }
+
+    /**
+     * Copies the odd values of {@code src[from, to)} into {@code dst} starting at
+     * index 0.
+     *
+     * @return number of odd values written to {@code dst}
+     */
+    static int selectOdds(int[] src, int from, int to, int[] dst) {
+        int count = 0;
+        int i = from;
+        // unrolled so the JIT can keep the four loads/stores independent
+        for (; i + 3 < to; i += 4) {
+            int a = src[i];
+            int b = src[i + 1];
+            int c = src[i + 2];
+            int d = src[i + 3];
+            dst[count] = a;
+            count += a & 1;
+            dst[count] = b;
+            count += b & 1;
+            dst[count] = c;
+            count += c & 1;
+            dst[count] = d;
+            count += d & 1;
+        }
+        for (; i < to; i++) {
+            int v = src[i];
+            dst[count] = v;
+            count += v & 1;
+        }
+        return count;
+    }
+
+    /**
+     * Writes every odd value of {@code arr} to {@code out} as a comma separated
+     * list and flushes once at the end.
+     */
+    public static void writeOdds(int[] arr, OutputStream out) {
+        int[] selected = new int[BLOCK];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int pos = 0;
+        boolean first = true;
+        try {
+            for (int from = 0; from < arr.length; from += BLOCK) {
+                int to = Math.min(arr.length, from + BLOCK);
+                int count = selectOdds(arr, from, to, selected);
+                for (int k = 0; k < count; k++) {
+                    if (pos > buffer.length - MAX_INT_CHARS) {
+                        out.write(buffer, 0, pos);
+                        pos = 0;
+                    }
+                    if (!first) {
+                        buffer[pos++] = ',';
+                    }
+                    pos = appendInt(buffer, pos, selected[k]);
+                    first = false;
+                }
+            }
+            out.write(buffer, 0, pos);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Number of odd values in {@code values}, counted in parallel on the common fork-join pool. */
+    public static long countOdds(OffHeapInts values) {
+        return countOdds(values, ForkJoinPool.commonPool());
+    }
+
+    public static long countOdds(OffHeapInts values, ForkJoinPool pool) {
+        return values.scan((range, first) -> {
+            long count = 0;
+            for (int i = 0; i < range.limit(); i++) {
+                count += range.get(i) & 1;
+            }
+            return count;
+        }, pool);
+    }
+
+    /**
+     * Writes every odd value of {@code values} to {@code out} like
+     * {@link #writeOdds(int[], OutputStream)}, on the calling thread.
+     */
+    public static void writeOdds(OffHeapInts values, OutputStream out) {
+        int[] block = new int[BLOCK];
+        int[] selected = new int[BLOCK];
+        byte[] text = new byte[SEGMENT * MAX_INT_CHARS];
+        boolean first = true;
+        try {
+            for (long from = 0; from < values.length(); from += SEGMENT) {
+                int length = formatOdds(values, from, Math.min(values.length(), from + SEGMENT), block, selected,
+                        text);
+                if (length > 0) {
+                    // every value is preceded by a separator; drop the very first one
+                    int skip = first ? 1 : 0;
+                    out.write(text, skip, length - skip);
+                    first = false;
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes every odd value of {@code values} to {@code out}, formatting on
+     * {@code threads} workers. The output is the same as the single-threaded
+     * version; at most {@code threads * 2} segments are in flight, so the heap
+     * used does not grow with the input.
+     */
+    public static void writeOdds(OffHeapInts values, OutputStream out, int threads) {
+        if (threads <= 1) {
+            writeOdds(values, out);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[][] { new int[BLOCK], new int[BLOCK] });
+        int maxPending = threads * 2;
+        ArrayDeque<byte[]> free = new ArrayDeque<>(maxPending);
+        for (int i = 0; i < maxPending; i++) {
+            free.add(new byte[SEGMENT * MAX_INT_CHARS]);
+        }
+        ArrayDeque<byte[]> pendingText = new ArrayDeque<>(maxPending);
+        ArrayDeque<Future<Integer>> pending = new ArrayDeque<>(maxPending);
+        boolean first = true;
+        try {
+            for (long from = 0; from < values.length(); from += SEGMENT) {
+                if (free.isEmpty()) {
+                    first = writeSegment(pending.removeFirst(), pendingText.peekFirst(), first, out);
+                    free.add(pendingText.removeFirst());
+                }
+                long start = from;
+                long end = Math.min(values.length(), from + SEGMENT);
+                byte[] text = free.removeFirst();
+                pending.addLast(pool.submit(() -> {
+                    int[][] buffers = scratch.get();
+                    return formatOdds(values, start, end, buffers[0], buffers[1], text);
+                }));
+                pendingText.addLast(text);
+            }
+            while (!pending.isEmpty()) {
+                first = writeSegment(pending.removeFirst(), pendingText.removeFirst(), first, out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while filtering", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** @return whether the next non-empty segment is still the first one */
+    private static boolean writeSegment(Future<Integer> segment, byte[] text, boolean first, OutputStream out)
+            throws IOException, InterruptedException {
+        int length;
+        try {
+            length = segment.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("formatting segment failed", e.getCause());
+        }
+        if (length == 0) {
+            return first;
+        }
+        int skip = first ? 1 : 0;
+        out.write(text, skip, length - skip);
+        return false;
+    }
+
+    /**
+     * Formats the odd values of {@code values[from, to)} into {@code text}, each
+     * preceded by ",".
+     *
+     * @return number of bytes written
+     */
+    static int formatOdds(OffHeapInts values, long from, long to, int[] block, int[] selected, byte[] text) {
+        int pos = 0;
+        for (long i = from; i < to; i += BLOCK) {
+            int n = (int) Math.min(BLOCK, to - i);
+            values.get(i, block, 0, n);
+            int count = selectOdds(block, 0, n, selected);
+            for (int k = 0; k < count; k++) {
+                text[pos++] = ',';
+                pos = appendInt(text, pos, selected[k]);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Writes {@code value} in decimal into {@code buffer} at {@code pos}.
+     *
+     * @return position after the last digit written
+     */
+    static int appendInt(byte[] buffer, int pos, int value) {
+        if (value == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_VALUE_TEXT, 0, buffer, pos, MIN_VALUE_TEXT.length);
+            return pos + MIN_VALUE_TEXT.length;
+        }
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        int end = pos + digits(value);
+        int i = end;
+        do {
+            buffer[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    private static int digits(int value) {
+        int d = 1;
+        while (value >= 10) {
+            value /= 10;
+            d++;
+        }
+        return d;
+    }
+}
@@ -0,0 +1,65 @@
+package M2;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/*
+Throughput comparison: original printOdds loop vs OddFilter
+-----------------------------------------------------------
+- Usage: java M2.OddFilterBenchmark [size] [rounds]
+- Both paths write into a PrintStream over a discarding OutputStream so the
+  numbers measure the print path itself and not the terminal
+- The original loop is copied here verbatim (one System.out.print per value)
+*/
+
+public class OddFilterBenchmark extends BaseClass {
+
+    private static final OutputStream NULL_SINK = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static void originalLoop(int[] arr, PrintStream out) {
+        boolean printfirst = false;
+        for (int i = 0; i < arr.length; i++) {
+            if (arr[i] % 2 != 0) {
+                if (printfirst) {
+                    out.print(",");
+                }
+                out.print(arr[i]);
+                printfirst = true;
+            }
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] data = new SplittableRandom(42).ints(size).toArray();
+        // autoflush mirrors System.out when attached to a console
+        PrintStream sink = new PrintStream(NULL_SINK, true);
+
+        System.out.println(colorize(String.format("OddFilter benchmark: %,d ints, %d rounds", size, rounds),
+                Color.PURPLE));
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            originalLoop(data, sink);
+            long original = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            OddFilter.writeOdds(data, sink);
+            long engine = System.nanoTime() - start;
+
+            System.out.println(String.format("round %d: original %8.1f ms (%7.1f M ints/s) | OddFilter %8.1f ms (%7.1f M ints/s) | %.1fx",
+                    r + 1, original / 1e6, size * 1e3 / original, engine / 1e6, size * 1e3 / engine,
+                    (double) original / engine));
+        }
+    }
+}
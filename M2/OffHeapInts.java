@@ -0,0 +1,301 @@
+package M2;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+Off-heap int sequence with 64-bit indexing (large Problem1 inputs)
+------------------------------------------------------------------
+- Holds up to Long.MAX_VALUE / 4 ints outside the Java heap, split into chunks of
+  2^26 ints (256MB); each chunk is an IntBuffer view over a direct or memory-mapped
+  ByteBuffer, so an index is (chunk = i >>> 26, offset = i & mask)
+- allocate(): direct memory, limited by -XX:MaxDirectMemorySize (defaults to the
+  max heap size)
+- create() / open(): backed by a file of little-endian ints, mapped chunk by chunk;
+  the page cache holds the data, so sequences far larger than the heap (or RAM)
+  work with a heap of a few MB
+- scan() runs a function over fixed ranges that never cross a chunk, in parallel on
+  a fork-join pool, and adds up the results; range boundaries depend only on the
+  length, like CompensatedSum
+- OddFilter.countOdds / writeOdds run the printOdds filter over it directly
+- Memory is released when the sequence becomes unreachable: on Java 17 the only
+  deterministic unmap is in the jdk.incubator.foreign incubator module (FFM), so
+  close() only drops the mappings
+- Usage: java M2.OffHeapInts --generate <file> <count>
+         java M2.OffHeapInts <file> [threads] [--count]
+*/
+
+public final class OffHeapInts implements AutoCloseable {
+    static final int CHUNK_SHIFT = 26;
+    // ints per scan() range; divides the chunk size so ranges never straddle two chunks
+    static final int RANGE = 1 << 20;
+
+    private final long length;
+    private final int shift;
+    private final int mask;
+    private ByteBuffer[] regions;
+    private IntBuffer[] chunks;
+
+    /** Computes a partial result for {@code values}, which holds the ints starting at index {@code first}. */
+    @FunctionalInterface
+    public interface RangeScan {
+        long scan(IntBuffer values, long first);
+    }
+
+    private OffHeapInts(long length, int shift, ByteBuffer[] regions) {
+        this.length = length;
+        this.shift = shift;
+        this.mask = (1 << shift) - 1;
+        this.regions = regions;
+        this.chunks = new IntBuffer[regions.length];
+        for (int c = 0; c < regions.length; c++) {
+            chunks[c] = regions[c].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+    }
+
+    private static int chunkCount(long length, int shift) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length " + length);
+        }
+        long count = (length + (1L << shift) - 1) >>> shift;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length " + length + " is too large");
+        }
+        return (int) count;
+    }
+
+    private static int chunkLength(long length, int shift, int chunk) {
+        return (int) Math.min(1L << shift, length - ((long) chunk << shift));
+    }
+
+    /** A zero-filled sequence of {@code length} ints in direct memory. */
+    public static OffHeapInts allocate(long length) {
+        return allocate(length, CHUNK_SHIFT);
+    }
+
+    static OffHeapInts allocate(long length, int shift) {
+        if (shift < Integer.numberOfTrailingZeros(RANGE) || shift > 28) {
+            throw new IllegalArgumentException("chunk shift must be between 20 and 28");
+        }
+        ByteBuffer[] regions = new ByteBuffer[chunkCount(length, shift)];
+        for (int c = 0; c < regions.length; c++) {
+            regions[c] = ByteBuffer.allocateDirect(chunkLength(length, shift, c) * Integer.BYTES);
+        }
+        return new OffHeapInts(length, shift, regions);
+    }
+
+    /** A writable sequence of {@code length} ints mapped from {@code file}, which is created or resized. */
+    public static OffHeapInts create(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() > length * Integer.BYTES) {
+                channel.truncate(length * Integer.BYTES);
+            }
+            return map(channel, FileChannel.MapMode.READ_WRITE, length);
+        }
+    }
+
+    /** A read-only sequence over the ints in {@code file}; a trailing partial int is ignored. */
+    public static OffHeapInts open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return map(channel, FileChannel.MapMode.READ_ONLY, channel.size() / Integer.BYTES);
+        }
+    }
+
+    // mappings stay valid after the channel is closed
+    private static OffHeapInts map(FileChannel channel, FileChannel.MapMode mode, long length) throws IOException {
+        ByteBuffer[] regions = new ByteBuffer[chunkCount(length, CHUNK_SHIFT)];
+        for (int c = 0; c < regions.length; c++) {
+            regions[c] = channel.map(mode, ((long) c << CHUNK_SHIFT) * Integer.BYTES,
+                    (long) chunkLength(length, CHUNK_SHIFT, c) * Integer.BYTES);
+        }
+        return new OffHeapInts(length, CHUNK_SHIFT, regions);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int get(long index) {
+        checkIndex(index);
+        return chunks[(int) (index >>> shift)].get((int) index & mask);
+    }
+
+    public void set(long index, int value) {
+        checkIndex(index);
+        chunks[(int) (index >>> shift)].put((int) index & mask, value);
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+    }
+
+    /** Copies {@code count} ints starting at {@code index} into {@code dst[offset...]}. */
+    public void get(long index, int[] dst, int offset, int count) {
+        if (index < 0 || count < 0 || index > length - count) {
+            throw new IndexOutOfBoundsException("range [" + index + ", " + index + " + " + count
+                    + ") out of bounds for length " + length);
+        }
+        while (count > 0) {
+            int chunk = (int) (index >>> shift);
+            int position = (int) index & mask;
+            int n = Math.min(count, chunks[chunk].limit() - position);
+            chunks[chunk].get(position, dst, offset, n);
+            index += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /** Copies {@code src[offset, offset + count)} into the sequence starting at {@code index}. */
+    public void set(long index, int[] src, int offset, int count) {
+        if (index < 0 || count < 0 || index > length - count) {
+            throw new IndexOutOfBoundsException("range [" + index + ", " + index + " + " + count
+                    + ") out of bounds for length " + length);
+        }
+        while (count > 0) {
+            int chunk = (int) (index >>> shift);
+            int position = (int) index & mask;
+            int n = Math.min(count, chunks[chunk].limit() - position);
+            chunks[chunk].put(position, src, offset, n);
+            index += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /** Runs {@code scan} over every range on the common fork-join pool and returns the sum of the results. */
+    public long scan(RangeScan scan) {
+        return scan(scan, ForkJoinPool.commonPool());
+    }
+
+    /** Runs {@code scan} over every range on {@code pool} and returns the sum of the results. */
+    public long scan(RangeScan scan, ForkJoinPool pool) {
+        long ranges = (length + RANGE - 1) / RANGE;
+        if (ranges == 0) {
+            return 0;
+        }
+        if (ranges == 1) {
+            return scanRange(scan, 0);
+        }
+        return pool.invoke(new ScanTask(scan, 0, ranges));
+    }
+
+    private long scanRange(RangeScan scan, long range) {
+        long first = range * RANGE;
+        int chunk = (int) (first >>> shift);
+        int position = (int) first & mask;
+        int end = (int) Math.min(position + (long) RANGE, chunks[chunk].limit());
+        // a private view, so scans may move its position without affecting other ranges
+        IntBuffer values = chunks[chunk].duplicate().limit(end).position(position).slice();
+        return scan.scan(values, first);
+    }
+
+    private final class ScanTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final transient RangeScan scan;
+        private final long from;
+        private final long to;
+
+        ScanTask(RangeScan scan, long from, long to) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from == 1) {
+                return scanRange(scan, from);
+            }
+            long mid = from + (to - from) / 2;
+            ScanTask left = new ScanTask(scan, from, mid);
+            ScanTask right = new ScanTask(scan, mid, to);
+            left.fork();
+            long r = right.compute();
+            return left.join() + r;
+        }
+    }
+
+    /** Writes changes to a file-backed sequence through to the file. */
+    public void force() {
+        for (ByteBuffer region : regions) {
+            if (region instanceof MappedByteBuffer && !region.isReadOnly()) {
+                ((MappedByteBuffer) region).force();
+            }
+        }
+    }
+
+    /** Drops the chunks; any further access fails. */
+    @Override
+    public void close() {
+        regions = new ByteBuffer[0];
+        chunks = new IntBuffer[0];
+    }
+
+    /** Fills {@code values} with random ints; each range gets its own seed, so the result is reproducible. */
+    static void fillRandom(OffHeapInts values, long seed) {
+        values.scan((chunk, first) -> {
+            SplittableRandom random = new SplittableRandom(seed + first);
+            for (int i = 0; i < chunk.limit(); i++) {
+                chunk.put(i, random.nextInt());
+            }
+            return 0;
+        });
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3 && args[0].equals("--generate")) {
+            long count = Long.parseLong(args[2]);
+            long start = System.nanoTime();
+            try (OffHeapInts values = create(Paths.get(args[1]), count)) {
+                fillRandom(values, 42);
+                values.force();
+            }
+            System.out.println(String.format("Generated %,d ints in %.1f ms", count,
+                    (System.nanoTime() - start) / 1e6));
+            return;
+        }
+        if (args.length < 1) {
+            System.out.println("Usage: java M2.OffHeapInts --generate <file> <count>");
+            System.out.println("       java M2.OffHeapInts <file> [threads] [--count]");
+            return;
+        }
+        int threads = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        boolean countOnly = args[args.length - 1].equals("--count");
+        try (OffHeapInts values = open(Paths.get(args[0]))) {
+            long start = System.nanoTime();
+            if (countOnly) {
+                long odds = OddFilter.countOdds(values, new ForkJoinPool(threads));
+                System.out.println(String.format("%,d odd values of %,d in %.1f ms", odds, values.length(),
+                        (System.nanoTime() - start) / 1e6));
+                return;
+            }
+            // same shape as Problem1.printOdds, written through the unbuffered stdout
+            OutputStream out = new FileOutputStream(FileDescriptor.out);
+            out.write("Output Array: ".getBytes(StandardCharsets.US_ASCII));
+            OddFilter.writeOdds(values, out, threads);
+            out.write('\n');
+            out.flush();
+            System.err.println(String.format("Filtered %,d ints in %.1f ms", values.length(),
+                    (System.nanoTime() - start) / 1e6));
+        }
+    }
+}
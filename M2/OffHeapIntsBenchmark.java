@@ -0,0 +1,145 @@
+package M2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+Odd filtering over a file-backed OffHeapInts sequence
+-----------------------------------------------------
+- Usage: java M2.OffHeapIntsBenchmark [size] [rounds] [file]
+  e.g.   java -Xmx64m M2.OffHeapIntsBenchmark 3000000000 3 /data/ints.bin
+- First checks on a small sequence with 2^20-int chunks that countOdds and both
+  writeOdds versions match OddFilter.writeOdds over the same int[], including
+  values that straddle chunk boundaries
+- Then generates [size] random ints into [file] (a temp file by default, deleted
+  afterwards; sizes past 2^31 are fine) and times countOdds and writeOdds into a
+  discarding stream on 1..N threads
+- Every line reports the collections and GC time of that phase and the heap in
+  use after it, to show the heap stays flat while the data lives off-heap
+*/
+
+public class OffHeapIntsBenchmark extends BaseClass {
+    // keeps the counts live so the JIT cannot drop the scans
+    static volatile long sink;
+
+    private static final OutputStream NULL_SINK = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+    private static String gcSince(long[] before) {
+        long[] after = gcTotals();
+        Runtime runtime = Runtime.getRuntime();
+        return String.format("%d GCs, %d ms GC, heap %.1f MB", after[0] - before[0], after[1] - before[1],
+                (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+    }
+
+    private static void check() {
+        int size = (1 << 20) + 200_003;
+        int[] data = new SplittableRandom(5).ints(size).toArray();
+        data[0] = Integer.MIN_VALUE + 1;
+        data[(1 << 20) - 1] = -7;
+        data[1 << 20] = 9;
+        OffHeapInts values = OffHeapInts.allocate(size, 20);
+        values.set(0, data, 0, size);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        OddFilter.writeOdds(data, expected);
+        long odds = Arrays.stream(data).filter(v -> v % 2 != 0).count();
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            OddFilter.writeOdds(values, actual, threads);
+            if (!Arrays.equals(expected.toByteArray(), actual.toByteArray())) {
+                throw new IllegalStateException("writeOdds output differs with " + threads + " threads");
+            }
+            if (OddFilter.countOdds(values, new ForkJoinPool(threads)) != odds) {
+                throw new IllegalStateException("countOdds differs with " + threads + " threads");
+            }
+        }
+        for (long i = (1 << 20) - 3; i < (1 << 20) + 3; i++) {
+            if (values.get(i) != data[(int) i]) {
+                throw new IllegalStateException("get(" + i + ") differs");
+            }
+        }
+        System.out.println(String.format("check: %,d ints, output identical to writeOdds(int[]) on 1, 2 and 4 threads",
+                size));
+    }
+
+    public static void main(String[] args) throws IOException {
+        long size = args.length > 0 ? Long.parseLong(args[0]) : 500_000_000L;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Path file = args.length > 2 ? Paths.get(args[2]) : Files.createTempFile("offheap-ints", ".bin");
+        boolean temporary = args.length <= 2;
+
+        check();
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        System.out.println(colorize(String.format("OffHeapInts benchmark: %,d ints (%,.1f MB) in %s, max heap %.0f MB",
+                size, size * 4 / 1e6, file, Runtime.getRuntime().maxMemory() / 1e6), Color.PURPLE));
+        try {
+            long[] gc = gcTotals();
+            long start = System.nanoTime();
+            try (OffHeapInts values = OffHeapInts.create(file, size)) {
+                OffHeapInts.fillRandom(values, 42);
+                values.force();
+            }
+            System.out.println(String.format("generate: %8.1f ms | %s", (System.nanoTime() - start) / 1e6,
+                    gcSince(gc)));
+
+            try (OffHeapInts values = OffHeapInts.open(file)) {
+                long reference = OddFilter.countOdds(values, new ForkJoinPool(1));
+                for (int r = 0; r < rounds; r++) {
+                    StringBuilder line = new StringBuilder(String.format("round %d:", r + 1));
+                    gc = gcTotals();
+                    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                        ForkJoinPool pool = new ForkJoinPool(threads);
+                        start = System.nanoTime();
+                        long odds = OddFilter.countOdds(values, pool);
+                        long time = System.nanoTime() - start;
+                        pool.shutdown();
+                        if (odds != reference) {
+                            throw new IllegalStateException("count changed with " + threads + " threads");
+                        }
+                        sink = odds;
+                        line.append(String.format(" count x%d %7.1f ms (%6.0f M ints/s) |", threads, time / 1e6,
+                                size * 1e3 / time));
+                    }
+                    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                        start = System.nanoTime();
+                        OddFilter.writeOdds(values, NULL_SINK, threads);
+                        long time = System.nanoTime() - start;
+                        line.append(String.format(" write x%d %7.1f ms (%5.0f M ints/s) |", threads, time / 1e6,
+                                size * 1e3 / time));
+                    }
+                    System.out.println(line.append(' ').append(gcSince(gc)));
+                }
+            }
+        } finally {
+            if (temporary) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package M2;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Memoizing cache in front of Problem4's phrase transform
+-------------------------------------------------------
+- Keyed by the raw input phrase; the value holds the modified phrase and its
+  middle characters, computed once with TextNormalizer
+- Bounded by an estimated memory budget in bytes (-Dphrase.cache.bytes, default 64MB)
+- Reads are lock-free: a ConcurrentHashMap lookup plus setting a "referenced" bit
+- Eviction is CLOCK (an LRU approximation) run per lock-striped segment, so only
+  misses take a lock and the hit path never reorders a list
+- Admission follows W-TinyLFU: a small count-min sketch remembers how often each
+  phrase was requested, and a new phrase only replaces the CLOCK victim if it has
+  been asked for at least as often. One-off phrases therefore cannot flush the
+  hot set out of the cache
+- hits / misses / evictions / rejections are exposed for sizing
+*/
+
+public final class PhraseCache {
+    public static final long DEFAULT_BUDGET = Long.getLong("phrase.cache.bytes", 64L << 20);
+    private static final int SEGMENTS = 16;
+    // rough per-entry cost on a 64-bit JVM: map node, Node, Entry, three String headers
+    private static final int ENTRY_OVERHEAD = 192;
+
+    private static final PhraseCache SHARED = new PhraseCache(DEFAULT_BUDGET);
+
+    /** Result of the Problem4 transform for one phrase. */
+    public static final class Entry {
+        private final String phrase;
+        private final String middle;
+
+        Entry(String phrase, String middle) {
+            this.phrase = phrase;
+            this.middle = middle;
+        }
+
+        public String phrase() {
+            return phrase;
+        }
+
+        public String middle() {
+            return middle;
+        }
+    }
+
+    private static final class Node {
+        final String key;
+        final Entry entry;
+        final int hash;
+        final long weight;
+        volatile boolean referenced;
+
+        Node(String key, Entry entry, int hash, long weight) {
+            this.key = key;
+            this.entry = entry;
+            this.hash = hash;
+            this.weight = weight;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Node> map = new ConcurrentHashMap<>();
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final ThreadLocal<TextNormalizer> normalizers = ThreadLocal
+            .withInitial(() -> new TextNormalizer(TextNormalizer.PROBLEM4));
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public PhraseCache(long budgetBytes) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(budgetBytes / SEGMENTS);
+        }
+    }
+
+    /** Cache used by Problem4. */
+    public static PhraseCache shared() {
+        return SHARED;
+    }
+
+    /** Returns the cached transform of {@code text}, computing it on a miss. */
+    public Entry get(String text) {
+        int hash = spread(text.hashCode());
+        sketch.increment(hash);
+        Node node = map.get(text);
+        if (node != null) {
+            // only write when the bit changes, so hot entries do not keep dirtying the line
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            hits.increment();
+            return node.entry;
+        }
+        misses.increment();
+        TextNormalizer normalizer = normalizers.get().normalize(text);
+        Entry entry = new Entry(normalizer.phrase(), normalizer.middle());
+        Segment segment = segments[hash & (SEGMENTS - 1)];
+        synchronized (segment) {
+            segment.admit(new Node(text, entry, hash, weigh(text, entry)));
+        }
+        return entry;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+
+    private static long weigh(String key, Entry entry) {
+        return ENTRY_OVERHEAD + 2L * (key.length() + entry.phrase.length() + entry.middle.length());
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    public double hitRate() {
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long weightedSize() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries=%,d bytes=%,d hits=%,d misses=%,d hitRate=%.1f%% evictions=%,d rejections=%,d",
+                size(), weightedSize(), hits(), misses(), hitRate() * 100, evictions(), rejections());
+    }
+
+    private final class Segment {
+        // CLOCK ring; null slots were freed by evictions and get reused first
+        final ArrayList<Node> ring = new ArrayList<>();
+        final ArrayList<Integer> free = new ArrayList<>();
+        final long budget;
+        long bytes;
+        int hand;
+
+        Segment(long budget) {
+            this.budget = budget;
+        }
+
+        // caller holds the segment lock
+        void admit(Node node) {
+            if (node.weight > budget || map.containsKey(node.key)) {
+                return;
+            }
+            if (bytes + node.weight > budget) {
+                Node victim = nextVictim();
+                if (sketch.frequency(node.hash) < sketch.frequency(victim.hash)) {
+                    // give the victim another lap instead of dropping a hotter entry
+                    victim.referenced = true;
+                    rejections.increment();
+                    return;
+                }
+                while (bytes + node.weight > budget) {
+                    evict(nextVictim());
+                }
+            }
+            map.put(node.key, node);
+            bytes += node.weight;
+            if (free.isEmpty()) {
+                ring.add(node);
+            } else {
+                ring.set(free.remove(free.size() - 1), node);
+            }
+        }
+
+        // advances the hand to the first unreferenced entry, clearing bits on the way
+        private Node nextVictim() {
+            while (true) {
+                if (hand >= ring.size()) {
+                    hand = 0;
+                }
+                Node node = ring.get(hand);
+                if (node != null) {
+                    if (!node.referenced) {
+                        return node;
+                    }
+                    node.referenced = false;
+                }
+                hand++;
+            }
+        }
+
+        private void evict(Node victim) {
+            map.remove(victim.key, victim);
+            bytes -= victim.weight;
+            ring.set(hand, null);
+            free.add(hand);
+            hand++;
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Count-min sketch with 4 rows of saturating counters (capped at 15). All
+     * counters are halved after a fixed number of increments so old popularity
+     * fades out. Updates are unsynchronized: a lost increment only makes the
+     * estimate slightly lower, which is fine for an admission hint.
+     */
+    private static final class FrequencySketch {
+        private static final int WIDTH = 1 << 16;
+        private static final int MAX = 15;
+        private static final int SAMPLE = WIDTH * 10;
+        private final byte[][] rows = new byte[4][WIDTH];
+        private int additions;
+
+        void increment(int hash) {
+            for (int r = 0; r < rows.length; r++) {
+                int i = index(hash, r);
+                if (rows[r][i] < MAX) {
+                    rows[r][i]++;
+                }
+            }
+            if (++additions >= SAMPLE) {
+                additions = 0;
+                for (byte[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+            }
+        }
+
+        int frequency(int hash) {
+            int min = MAX;
+            for (int r = 0; r < rows.length; r++) {
+                min = Math.min(min, rows[r][index(hash, r)]);
+            }
+            return min;
+        }
+
+        private static int index(int hash, int row) {
+            int h = hash * (0x9E3779B1 + 2 * row);
+            return (h >>> 16) & (WIDTH - 1);
+        }
+    }
+}
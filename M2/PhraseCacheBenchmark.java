@@ -0,0 +1,126 @@
+package M2;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Zipf phrase workload: uncached TextNormalizer vs PhraseCache
+------------------------------------------------------------
+- Usage: java M2.PhraseCacheBenchmark [distinctPhrases] [requests] [threads] [zipfExponent]
+- Phrase ranks are drawn from a Zipf distribution, so a few headlines make up
+  most of the traffic and there is a long tail of rare ones
+- The cache is run with several memory budgets to show hit rate vs size
+*/
+
+public class PhraseCacheBenchmark extends BaseClass {
+    private static final String[] WORDS = { "breaking", "NEWS:", "java", "17", "release", "  market", "update!!",
+            "Weather", "report", "sports", "@home", "final", "score", "city", "council", "vote", "tech", "stocks" };
+
+    static volatile int sink;
+
+    private static String[] phrases(int count) {
+        SplittableRandom random = new SplittableRandom(11);
+        String[] phrases = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder phrase = new StringBuilder();
+            int words = 3 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                phrase.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            phrases[i] = phrase.append(i).toString();
+        }
+        return phrases;
+    }
+
+    // inverse-CDF sampling of ranks 0..n-1 with P(rank k) ~ 1 / (k + 1)^s
+    private static int[] zipf(int n, int samples, double s) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1 / Math.pow(k + 1, s);
+            cdf[k] = total;
+        }
+        SplittableRandom random = new SplittableRandom(5);
+        int[] ranks = new int[samples];
+        for (int i = 0; i < samples; i++) {
+            double u = random.nextDouble() * total;
+            int lo = 0, hi = n - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < u) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            ranks[i] = lo;
+        }
+        return ranks;
+    }
+
+    private interface Transform {
+        int apply(String phrase);
+    }
+
+    private static long run(String[] phrases, int[] ranks, int threads, Transform transform) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) ranks.length * t / threads);
+            int to = (int) ((long) ranks.length * (t + 1) / threads);
+            futures[t] = pool.submit(() -> {
+                int checksum = 0;
+                for (int i = from; i < to; i++) {
+                    checksum += transform.apply(phrases[ranks[i]]);
+                }
+                sink += checksum;
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int distinct = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        double exponent = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+
+        String[] phrases = phrases(distinct);
+        int[] ranks = zipf(distinct, requests, exponent);
+        System.out.println(colorize(String.format("PhraseCache benchmark: %,d phrases, %,d requests, %d threads, zipf s=%.2f",
+                distinct, requests, threads, exponent), Color.PURPLE));
+
+        ThreadLocal<TextNormalizer> normalizers = ThreadLocal
+                .withInitial(() -> new TextNormalizer(TextNormalizer.PROBLEM4));
+        Transform uncachedTransform = phrase -> {
+            TextNormalizer normalizer = normalizers.get().normalize(phrase);
+            return normalizer.phrase().length() + normalizer.middle().length();
+        };
+        // warm-up pass so both paths are measured after JIT compilation
+        run(phrases, ranks, threads, uncachedTransform);
+        PhraseCache warmup = new PhraseCache(8L << 20);
+        run(phrases, ranks, threads, phrase -> warmup.get(phrase).phrase().length());
+
+        long uncached = run(phrases, ranks, threads, uncachedTransform);
+        System.out.println(String.format("uncached        %8.1f ms  %6.2f M req/s", uncached / 1e6,
+                requests * 1e3 / uncached));
+
+        for (long budget : new long[] { 1L << 20, 8L << 20, 64L << 20 }) {
+            PhraseCache cache = new PhraseCache(budget);
+            long elapsed = run(phrases, ranks, threads, phrase -> {
+                PhraseCache.Entry entry = cache.get(phrase);
+                return entry.phrase().length() + entry.middle().length();
+            });
+            System.out.println(String.format("cache %4d MB   %8.1f ms  %6.2f M req/s  %.1fx | %s", budget >> 20,
+                    elapsed / 1e6, requests * 1e3 / elapsed, (double) uncached / elapsed, cache));
+        }
+    }
+}
@@ -21,17 +21,9 @@ public class Problem1 extends BaseClass {
         // 4. Turns out there is a extra comma at end we need to delete and get rid of 
         System.out.print("Output Array: ");
         // Start Solution Edits
-        boolean printfirst = false;
-        for (int i = 0; i < arr.length; i++) {
-            if (arr[i] % 2 != 0) {
-                if (printfirst) {
-                    System.out.print(",");
-        }
-            System.out.print(arr[i]);
-            printfirst = true;
-    }
-}
-
+        // 5. (perf) selection + formatting moved to OddFilter so the whole line is
+        //    written in one buffered batch instead of one print per value
+        OddFilter.writeOdds(arr, System.out);
 
         // End Solution Edits
         System.out.println("");
@@ -26,9 +26,9 @@ public class Problem2 extends BaseClass {
         double total = 0;
         // Start Solution Edits
         // Solve Challenge 1 here
-        for (double number : arr) {
-            total += number;
-}
+        // 5. (perf/precision) CompensatedSum replaces the plain `total += number` loop;
+        //    it keeps the low order bits (array4) and splits big arrays across cores
+        total = CompensatedSum.sum(arr);
 
       
         // Solve Challenge 2 here
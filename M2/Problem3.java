@@ -23,30 +23,9 @@ public class Problem3 extends BaseClass {
         // final element value in array in order while being positive 
         Object[] output = new Object[arr.length];
         // Start Solution Edits
-        for (int index = 0; index < arr.length; index++) {
-            Object element = arr[index];
-            if (element instanceof Integer) {
-                output[index] = Math.abs((Integer) element);
-            } else if (element instanceof Double) {
-                output[index] = Math.abs((Double) element);
-            } else if (element instanceof Float) {
-                output[index] = Math.abs((Float) element);
-            } else if (element instanceof String) {
-                String text = (String) element;
-                if (text.contains(".")) {
-                    double decimalValue = Double.parseDouble(text);
-                    output[index] = String.valueOf(Math.abs(decimalValue));
-                } else {
-                    int intValue = Integer.parseInt(text);
-                    output[index] = String.valueOf(Math.abs(intValue));
-                } 
-            
-        } else {
-            output[index] = element; 
-   
-
- }
-        }
+        // (perf) the type dispatch and Math.abs now run on primitive columns in
+        // ColumnarNumbers; values are only boxed again when copied into `output`
+        ColumnarNumbers.from(arr).absInPlace().copyInto(output);
 
         // End Solution Edits
         System.out.println("Output: ");
@@ -37,22 +37,10 @@ public class Problem4 extends BaseClass {
         for(int i = 0; i <arr.length; i++){
             // Start Solution Edits
             
-            String original = arr[i];
-            String cleaner = original.replaceAll("[^a-zA-Z0-9 ]", "");
-            String clean = cleaner.trim().replaceAll("\\s+", " ");
-
-            String[] text = clean.split(" ");
-            StringBuilder Textcase = new StringBuilder();
-            for (int j = 0; j < text.length; j++) {
-                if (!text[j].isEmpty()) {
-                    Textcase.append(Character.toUpperCase(text[j].charAt(0)));
-                    Textcase.append(text[j].substring(1).toLowerCase()); //make sure rest is lowercase
-                    if (j < text.length - 1) { //make sure not the last one 
-                        Textcase.append(" ");
-                    }
-                }
-            }
-            String placeholderForModifiedPhrase = Textcase.toString();
+            // 5. (perf) steps 1-4 now run as a single scan in TextNormalizer instead of
+            //    three regex passes plus split/substring/toLowerCase per word
+            // 6. (perf) repeated phrases are served from PhraseCache
+            String placeholderForModifiedPhrase = PhraseCache.shared().get(arr[i]).phrase();
 
              // End Solution Edits
             System.out.println(String.format("Index[%d] \"%s\" | Middle: \"%s\"",i, placeholderForModifiedPhrase, placeholderForMiddleCharacters));
@@ -0,0 +1,88 @@
+package M2;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+Precision and wall time: original sumValues loop vs CompensatedSum
+------------------------------------------------------------------
+- Usage: java M2.SumBenchmark [size] [rounds]
+- Error is measured against an exact BigDecimal sum of the same doubles
+- The compensated result is recomputed on pools of 1..N threads and every run
+  is checked to be bit-for-bit identical
+*/
+
+public class SumBenchmark extends BaseClass {
+    // keeps the naive result live so the JIT cannot drop the loop
+    static volatile double sink;
+
+    private static double naive(double[] arr) {
+        double total = 0;
+        for (double number : arr) {
+            total += number;
+        }
+        return total;
+    }
+
+    private static BigDecimal exact(double[] arr) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (double number : arr) {
+            total = total.add(new BigDecimal(number));
+        }
+        return total;
+    }
+
+    private static String error(double value, BigDecimal exact) {
+        return String.format("%.3g", new BigDecimal(value).subtract(exact).abs().doubleValue());
+    }
+
+    private static void precision(String name, double[] arr) {
+        BigDecimal exact = exact(arr);
+        double n = naive(arr);
+        double c = CompensatedSum.sum(arr);
+        System.out.println(String.format("%-10s naive %-24s (err %-9s) | compensated %-24s (err %s)",
+                name, n, error(n, exact), c, error(c, exact)));
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.println(colorize("Precision", Color.PURPLE));
+        precision("array4", new double[] { 1e16, 1.0, -1e16, 2.0, -2.0, 1e-16 });
+        precision("array1", new double[] { 0.1, 0.2, 0.3, 0.4, 0.5, 0.6 });
+        // mixed signs across 20 orders of magnitude, so small values get absorbed
+        SplittableRandom random = new SplittableRandom(7);
+        double[] data = new double[size];
+        for (int i = 0; i < size; i++) {
+            double sign = random.nextBoolean() ? 1 : -1;
+            data[i] = sign * random.nextDouble() * Math.pow(10, random.nextInt(20));
+        }
+        precision("random", data);
+
+        System.out.println(colorize(String.format("Wall time: %,d doubles, %d rounds", size, rounds), Color.PURPLE));
+        int maxThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+        long reference = Double.doubleToRawLongBits(CompensatedSum.sum(data, new ForkJoinPool(1)));
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            double n = naive(data);
+            long naiveTime = System.nanoTime() - start;
+            StringBuilder line = new StringBuilder(String.format("round %d: naive %7.1f ms", r + 1, naiveTime / 1e6));
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                start = System.nanoTime();
+                double c = CompensatedSum.sum(data, pool);
+                long time = System.nanoTime() - start;
+                pool.shutdown();
+                if (Double.doubleToRawLongBits(c) != reference) {
+                    throw new IllegalStateException("result changed with " + threads + " threads");
+                }
+                line.append(String.format(" | compensated x%d %7.1f ms", threads, time / 1e6));
+            }
+            sink = n;
+            System.out.println(line);
+        }
+        System.out.println("compensated results were bit-for-bit identical for every thread count");
+    }
+}
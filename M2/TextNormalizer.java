@@ -0,0 +1,223 @@
+package M2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Single-pass text normalization used by Problem4.transformText
+-------------------------------------------------------------
+- The stages Problem4 runs as separate regex passes are fused into one scan:
+  STRIP_NON_ALPHANUMERIC  same as replaceAll("[^a-zA-Z0-9 ]", "")
+  COLLAPSE_SPACES         same as trim().replaceAll("\\s+", " ")
+  TITLE_CASE              upper case first letter of each word, lower case the rest
+  MIDDLE_CHARACTERS       middle 3 characters of the result (Challenge 4)
+- Each character is looked at once and written at most once into a char buffer
+  owned by the normalizer and reused between phrases
+- A normalizer is not thread-safe; use one per thread
+- File mode normalizes one phrase per line in parallel batches and writes the
+  results in input order
+- Usage: java M2.TextNormalizer <in> <out> [threads] [--middle]
+*/
+
+public final class TextNormalizer {
+    public enum Stage {
+        STRIP_NON_ALPHANUMERIC,
+        COLLAPSE_SPACES,
+        TITLE_CASE,
+        MIDDLE_CHARACTERS
+    }
+
+    /** Stages that reproduce Problem4's `placeholderForModifiedPhrase`. */
+    public static final Set<Stage> PROBLEM4 = EnumSet.of(Stage.STRIP_NON_ALPHANUMERIC, Stage.COLLAPSE_SPACES,
+            Stage.TITLE_CASE);
+    public static final String NOT_ENOUGH_CHARACTERS = "Not enough characters";
+
+    static final int BATCH_LINES = 8192;
+
+    private static final ThreadLocal<TextNormalizer> PROBLEM4_NORMALIZER = ThreadLocal
+            .withInitial(() -> new TextNormalizer(PROBLEM4));
+
+    private final boolean strip;
+    private final boolean collapse;
+    private final boolean titleCase;
+    private final boolean middle;
+    private char[] buffer = new char[128];
+    private int length;
+
+    public TextNormalizer(Set<Stage> stages) {
+        strip = stages.contains(Stage.STRIP_NON_ALPHANUMERIC);
+        collapse = stages.contains(Stage.COLLAPSE_SPACES);
+        titleCase = stages.contains(Stage.TITLE_CASE);
+        middle = stages.contains(Stage.MIDDLE_CHARACTERS);
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    // the characters the regex \s matches
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Runs every enabled stage over {@code text} in one scan; read the result with {@link #phrase()}. */
+    public TextNormalizer normalize(CharSequence text) {
+        int n = text.length();
+        if (buffer.length < n) {
+            buffer = new char[Math.max(n, buffer.length * 2)];
+        }
+        char[] out = buffer;
+        int len = 0;
+        boolean pendingSpace = false;
+        boolean wordStart = true;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (strip && c != ' ' && !isAlphanumeric(c)) {
+                continue;
+            }
+            if (isSpace(c) && (collapse || c == ' ')) {
+                if (collapse) {
+                    // leading spaces are dropped, inner runs become one space
+                    pendingSpace = len > 0;
+                } else {
+                    out[len++] = c;
+                }
+                wordStart = true;
+                continue;
+            }
+            if (pendingSpace) {
+                out[len++] = ' ';
+                pendingSpace = false;
+            }
+            if (titleCase) {
+                c = wordStart ? Character.toUpperCase(c) : Character.toLowerCase(c);
+            }
+            wordStart = false;
+            out[len++] = c;
+        }
+        length = len;
+        return this;
+    }
+
+    /** Problem4's modified phrase for {@code text}, using this thread's reusable normalizer. */
+    public static String modifiedPhrase(String text) {
+        return PROBLEM4_NORMALIZER.get().normalize(text).phrase();
+    }
+
+    public String phrase() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Up to 3 characters starting at the middle of the last phrase, never using the
+     * first or last character; {@value #NOT_ENOUGH_CHARACTERS} for phrases shorter
+     * than 3.
+     */
+    public String middle() {
+        if (length < 3) {
+            return NOT_ENOUGH_CHARACTERS;
+        }
+        int start = length / 2;
+        int end = Math.min(start + 3, length - 1);
+        return new String(buffer, start, end - start);
+    }
+
+    /** Appends the last phrase (and its middle characters when enabled) to {@code out}. */
+    public void appendTo(StringBuilder out) {
+        out.append(buffer, 0, length);
+        if (middle) {
+            out.append('\t').append(middle());
+        }
+    }
+
+    /**
+     * Normalizes every line of {@code in} into {@code out} using {@code threads}
+     * workers; output lines keep the input order.
+     */
+    public static void normalizeFile(Path in, Path out, Set<Stage> stages, int threads)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<TextNormalizer> normalizers = ThreadLocal.withInitial(() -> new TextNormalizer(stages));
+        // bounded so the reader cannot run arbitrarily far ahead of the writer
+        ArrayDeque<Future<StringBuilder>> pending = new ArrayDeque<>();
+        int maxPending = threads * 2;
+        try (BufferedReader reader = Files.newBufferedReader(in, StandardCharsets.UTF_8);
+                BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            List<String> batch = new ArrayList<>(BATCH_LINES);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == BATCH_LINES) {
+                    if (pending.size() == maxPending) {
+                        writeBatch(pending.removeFirst(), writer);
+                    }
+                    List<String> lines = batch;
+                    pending.addLast(pool.submit(() -> normalizeBatch(lines, normalizers.get())));
+                    batch = new ArrayList<>(BATCH_LINES);
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<String> lines = batch;
+                pending.addLast(pool.submit(() -> normalizeBatch(lines, normalizers.get())));
+            }
+            while (!pending.isEmpty()) {
+                writeBatch(pending.removeFirst(), writer);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static StringBuilder normalizeBatch(List<String> lines, TextNormalizer normalizer) {
+        StringBuilder out = new StringBuilder(lines.size() * 32);
+        for (String line : lines) {
+            normalizer.normalize(line).appendTo(out);
+            out.append('\n');
+        }
+        return out;
+    }
+
+    private static void writeBatch(Future<StringBuilder> batch, Writer writer)
+            throws IOException, InterruptedException {
+        try {
+            writer.append(batch.get());
+        } catch (ExecutionException e) {
+            throw new IOException("normalizing batch failed", e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java M2.TextNormalizer <in> <out> [threads] [--middle]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        Set<Stage> stages = EnumSet.copyOf(PROBLEM4);
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--middle")) {
+                stages.add(Stage.MIDDLE_CHARACTERS);
+            } else {
+                threads = Integer.parseInt(args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        normalizeFile(Paths.get(args[0]), Paths.get(args[1]), stages, threads);
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("Normalized %s with %d threads in %.1f ms", args[0], threads, elapsed / 1e6));
+    }
+}
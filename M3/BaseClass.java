@@ -1,5 +1,7 @@
 package M3;
 
+import Common.ConsoleWriter;
+import Common.RunMetrics;
 import java.time.LocalDateTime;
 
 public class BaseClass {
@@ -24,23 +26,35 @@ public class BaseClass {
         }
     }
 
-    public static final String RESET = "\033[0m";
+    public static final String RESET = ConsoleWriter.RESET;
+
+    private static final StackWalker STACK = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
 
     public static String colorize(String text, Color color) {
+        if (!ConsoleWriter.colorEnabled()) {
+            return text;
+        }
         return color.getCode() + text + RESET;
     }
 
     public static void printHeader(String ucid, int problem, String description) {
+        // header/footer bracket every run, so they also start/stop its timing
+        if (RunMetrics.enabled()) {
+            RunMetrics.begin(STACK.getCallerClass().getName());
+        }
         LocalDateTime currentDT = LocalDateTime.now();
-        System.out.println(
-                colorize(String.format("Running Problem %d for [%s] [%s] \n %s", problem, ucid, currentDT, description),
-                        Color.PURPLE));
-
+        ConsoleWriter out = ConsoleWriter.out();
+        out.colored(String.format("Running Problem %d for [%s] [%s] \n %s", problem, ucid, currentDT, description),
+                Color.PURPLE.getCode()).newLine();
+        out.flush();
     }
 
     public static void printFooter(String ucid, int problem) {
+        RunMetrics.end();
         LocalDateTime currentDT = LocalDateTime.now();
-        System.out.println(
-                colorize(String.format("Completed Problem %d for [%s] [%s]", problem, ucid, currentDT), Color.PURPLE));
+        ConsoleWriter out = ConsoleWriter.out();
+        out.colored(String.format("Completed Problem %d for [%s] [%s]", problem, ucid, currentDT), Color.PURPLE.getCode())
+                .newLine();
+        out.flush();
     }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Streaming mode for CommandLineCalculator
+----------------------------------------
+- Reads line-delimited "<num1> <operator> <num2>" expressions from a channel
+  (file or stdin) and writes one result line per input line, in input order
+- Input is read in 1MB blocks by LineBlockReader; each block is cut at its last
+  newline and handed over as a whole, so no String is built per line on the
+  reading thread
+- Results use the same rules as the single-expression mode (getDecimalPlaces,
+  cached DecimalFormat per precision) and the same error messages
+- Each block's results are written with a single channel write
+- With threads > 1, blocks are evaluated on a pool; finished blocks are written
+  strictly in submission order and at most 2 * threads blocks are in flight
+- Usage: java M3.CalculatorStream [in|-] [out|-] [threads]
+*/
+
+public class CalculatorStream {
+    static final int BLOCK_SIZE = 1 << 20;
+    static final String UNSUPPORTED = "Error: Unsupported operator. Use + or -.";
+    static final String INVALID = "Invalid input. Please ensure correct format and valid numbers.";
+
+    /**
+     * Evaluates every line of {@code in} and writes the results to {@code out}.
+     *
+     * @return number of expressions (lines) evaluated
+     */
+    public static long evaluate(ReadableByteChannel in, WritableByteChannel out, int threads)
+            throws IOException, InterruptedException {
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        int maxPending = threads * 2;
+        long lines = 0;
+        LineBlockReader reader = new LineBlockReader(in, BLOCK_SIZE);
+        try {
+            byte[] block;
+            while ((block = reader.next()) != null) {
+                lines += countLines(block);
+                if (pool == null) {
+                    write(out, evaluateBlock(block));
+                    continue;
+                }
+                if (pending.size() == maxPending) {
+                    write(out, pending.removeFirst());
+                }
+                byte[] lineBlock = block;
+                pending.addLast(pool.submit(() -> evaluateBlock(lineBlock)));
+            }
+            while (!pending.isEmpty()) {
+                write(out, pending.removeFirst());
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        return lines;
+    }
+
+    private static int countLines(byte[] block) {
+        int count = 0;
+        for (byte b : block) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Evaluates a block of complete, newline-terminated lines. */
+    static byte[] evaluateBlock(byte[] block) {
+        StringBuilder results = new StringBuilder(block.length);
+        int start = 0;
+        for (int i = 0; i < block.length; i++) {
+            if (block[i] != '\n') {
+                continue;
+            }
+            int end = i > start && block[i - 1] == '\r' ? i - 1 : i;
+            results.append(evaluateLine(block, start, end)).append('\n');
+            start = i + 1;
+        }
+        return results.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Result (or error message) for the expression in {@code line[from, to)}; blank lines stay blank. */
+    static String evaluateLine(byte[] line, int from, int to) {
+        String[] tokens = new String[3];
+        int count = 0;
+        int i = from;
+        while (i < to) {
+            while (i < to && (line[i] == ' ' || line[i] == '\t')) {
+                i++;
+            }
+            if (i == to) {
+                break;
+            }
+            int tokenStart = i;
+            while (i < to && line[i] != ' ' && line[i] != '\t') {
+                i++;
+            }
+            if (count == 3) {
+                return INVALID;
+            }
+            tokens[count++] = new String(line, tokenStart, i - tokenStart, StandardCharsets.UTF_8);
+        }
+        if (count == 0) {
+            return "";
+        }
+        if (count != 3) {
+            return INVALID;
+        }
+        if (!CommandLineCalculator.isSupported(tokens[1])) {
+            return UNSUPPORTED;
+        }
+        try {
+            return CommandLineCalculator.evaluate(tokens[0], tokens[1], tokens[2]);
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    private static void write(WritableByteChannel out, Future<byte[]> results)
+            throws IOException, InterruptedException {
+        try {
+            write(out, results.get());
+        } catch (ExecutionException e) {
+            throw new IOException("evaluating block failed", e.getCause());
+        }
+    }
+
+    private static void write(WritableByteChannel out, byte[] results) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(results);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String inName = args.length > 0 ? args[0] : "-";
+        String outName = args.length > 1 ? args[1] : "-";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        // System.in / System.out rather than the process descriptors, so the mode also works
+        // under ToolDaemon, where they are the client's streams; they are flushed, never closed
+        ReadableByteChannel in = inName.equals("-") ? Channels.newChannel(System.in)
+                : FileChannel.open(Paths.get(inName), StandardOpenOption.READ);
+        WritableByteChannel out = outName.equals("-") ? Channels.newChannel(System.out)
+                : FileChannel.open(Paths.get(outName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        long start = System.nanoTime();
+        long lines;
+        try {
+            lines = evaluate(in, out, threads);
+        } finally {
+            if (!inName.equals("-")) {
+                in.close();
+            }
+            if (outName.equals("-")) {
+                System.out.flush();
+            } else {
+                out.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!outName.equals("-")) {
+            System.out.println(String.format("Evaluated %,d expressions with %d threads in %.1f ms (%.0f/s)", lines,
+                    threads, elapsed / 1e6, lines / (elapsed / 1e9)));
+        }
+    }
+}
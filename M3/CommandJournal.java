@@ -0,0 +1,269 @@
+package M3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+Append-only journal of slash commands and their responses
+---------------------------------------------------------
+- Records go into a directory of fixed-size segment files
+  (journal-00000000000000000042.seg) that are memory-mapped, so an append is a
+  handful of stores into the page cache with no system call
+- At most maxSegments files exist; rolling past that renames the oldest one to
+  the next index and overwrites it (a ring), so disk use stays bounded
+- Segment layout: int MAGIC, int VERSION, long segment index, then records, each
+  starting on an 8-byte boundary:
+    int bodyLength | int commandBytes | long epochMicros | command | response (UTF-8)
+  bodyLength 0 = nothing written yet, -1 = rest of the segment is unused
+- Every record writes a 0 into the next record's length slot and then publishes
+  its own length with a release store, so a concurrent reader (JournalReader tail)
+  never sees a half-written record, even in a recycled segment
+- Strings are UTF-8 encoded straight into the mapping (no byte[] per record)
+- Durability is grouped: the written range is forced to disk every flushEvery
+  records, on every roll and on close; until then records are in the page cache
+  and survive a crash of the process (not of the machine)
+- Opening an existing directory continues after its last record
+- Enable it for SlashCommandHandler with -Dslash.journal=<dir>
+*/
+
+public final class CommandJournal implements Closeable {
+    static final int MAGIC = 0x434A4E4C; // "CJNL"
+    static final int VERSION = 1;
+    static final int HEADER = 16;
+    static final int RECORD_HEADER = 16;
+    static final int END_OF_SEGMENT = -1;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+    public static final int DEFAULT_FLUSH_EVERY = 4096;
+
+    // release / acquire access to the length slots of a mapped segment
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final long BASE_MICROS = System.currentTimeMillis() * 1000;
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int flushEvery;
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    private int forcedTo;
+    private int unflushed;
+    private long records;
+
+    public CommandJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_FLUSH_EVERY);
+    }
+
+    public CommandJournal(Path directory, int segmentSize, int maxSegments, int flushEvery) throws IOException {
+        if (segmentSize < HEADER + RECORD_HEADER + 8 || segmentSize % 8 != 0 || maxSegments < 1 || flushEvery < 1) {
+            throw new IllegalArgumentException("bad journal settings");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.flushEvery = flushEvery;
+        Files.createDirectories(directory);
+        List<Path> existing = segments(directory);
+        if (existing.isEmpty()) {
+            open(0, null);
+        } else {
+            resume(existing.get(existing.size() - 1));
+        }
+    }
+
+    static String segmentName(long index) {
+        return String.format("journal-%020d.seg", index);
+    }
+
+    static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".seg".length()));
+    }
+
+    /** Segment files of {@code directory}, oldest first. */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(p -> p.getFileName().toString().matches("journal-\\d{20}\\.seg")).sorted()
+                    .forEach(files::add);
+        }
+        return files;
+    }
+
+    /** Microseconds since the epoch, from one wall-clock reading plus System.nanoTime(). */
+    static long nowMicros() {
+        return BASE_MICROS + (System.nanoTime() - BASE_NANOS) / 1000;
+    }
+
+    private void open(long index, Path recycled) throws IOException {
+        Path file = directory.resolve(segmentName(index));
+        if (recycled != null) {
+            Files.move(recycled, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentIndex = index;
+        // a recycled segment is invalid until its first length slot reads 0 again
+        INT.setRelease(segment, 0, 0);
+        segment.putInt(HEADER, 0);
+        segment.putLong(8, index);
+        segment.putInt(4, VERSION);
+        INT.setRelease(segment, 0, MAGIC);
+        position = HEADER;
+        forcedTo = 0;
+    }
+
+    private void resume(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentIndex = segmentIndex(file);
+        if (segment.getInt(0) != MAGIC || segment.getLong(8) != segmentIndex) {
+            // never initialized (e.g. crashed while being created): start it over
+            channel.close();
+            open(segmentIndex, null);
+            return;
+        }
+        position = HEADER;
+        while (position + 4 <= segmentSize) {
+            int length = segment.getInt(position);
+            if (length <= 0) {
+                break;
+            }
+            position = align(position + 4 + length);
+        }
+        forcedTo = position;
+        if (position + 4 > segmentSize || segment.getInt(position) == END_OF_SEGMENT) {
+            roll();
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    /**
+     * Appends one command and its response.
+     *
+     * @throws IllegalArgumentException if the record cannot fit in an empty segment
+     */
+    public synchronized void append(String command, String response) throws IOException {
+        int commandBytes = utf8Length(command);
+        int body = RECORD_HEADER - 4 + commandBytes + utf8Length(response);
+        int end = align(position + 4 + body);
+        if (end + 4 > segmentSize) {
+            if (align(HEADER + 4 + body) + 4 > segmentSize) {
+                throw new IllegalArgumentException("record of " + body + " bytes does not fit a journal segment");
+            }
+            INT.setRelease(segment, position, END_OF_SEGMENT);
+            roll();
+            end = align(position + 4 + body);
+        }
+        MappedByteBuffer target = segment;
+        int at = position;
+        target.putInt(at + 4, commandBytes);
+        target.putLong(at + 8, nowMicros());
+        int next = encode(command, target, at + RECORD_HEADER);
+        encode(response, target, next);
+        // terminate before publishing, so a recycled segment never shows stale records
+        target.putInt(end, 0);
+        INT.setRelease(target, at, body);
+        position = end;
+        records++;
+        if (++unflushed >= flushEvery) {
+            flush();
+        }
+    }
+
+    /** Forces everything appended so far to the storage device. */
+    public synchronized void flush() {
+        if (position > forcedTo) {
+            segment.force(forcedTo, position - forcedTo + 4);
+            forcedTo = position;
+        }
+        unflushed = 0;
+    }
+
+    private void roll() throws IOException {
+        flush();
+        channel.close();
+        List<Path> existing = segments(directory);
+        Path recycled = existing.size() >= maxSegments ? existing.get(0) : null;
+        open(segmentIndex + 1, recycled);
+    }
+
+    /** Records appended through this instance. */
+    public synchronized long records() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    static int utf8Length(String text) {
+        int n = text.length();
+        int bytes = n;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                }
+                // a lone surrogate is written as '?', one byte
+            }
+        }
+        return bytes;
+    }
+
+    private static int encode(String text, MappedByteBuffer target, int at) {
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                target.put(at++, (byte) c);
+            } else if (c < 0x800) {
+                target.put(at++, (byte) (0xC0 | c >> 6));
+                target.put(at++, (byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                target.put(at++, (byte) (0xF0 | cp >> 18));
+                target.put(at++, (byte) (0x80 | cp >> 12 & 0x3F));
+                target.put(at++, (byte) (0x80 | cp >> 6 & 0x3F));
+                target.put(at++, (byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                target.put(at++, (byte) '?');
+            } else {
+                target.put(at++, (byte) (0xE0 | c >> 12));
+                target.put(at++, (byte) (0x80 | c >> 6 & 0x3F));
+                target.put(at++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        return at;
+    }
+}
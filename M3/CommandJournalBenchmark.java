@@ -0,0 +1,105 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/*
+Journal overhead per command
+----------------------------
+- Usage: java M3.CommandJournalBenchmark [commands] [rounds]
+- Dispatches a fixed mixed command stream with and without CommandJournal.append
+  and reports the difference per command, plus append alone
+- Runs in a temporary directory with 16MB segments and a ring of 4, so the
+  timed loops include segment rolls and recycling
+- Afterwards the journal is read back with JournalReader and the records of the
+  last segments are checked against what was written
+*/
+
+public class CommandJournalBenchmark extends BaseClass {
+    // keeps results live so the JIT cannot drop the loops
+    static volatile int sink;
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] mix = { "/greet Alice", "/GREET Bob", "/roll 3d6", "/echo hello there", "/unknown thing",
+                "/echo héllo wörld 😀", "/greet" };
+        SplittableRandom random = new SplittableRandom(4);
+        String[] commands = new String[size];
+        String[] responses = new String[size];
+        Random rand = new Random(1);
+        for (int i = 0; i < size; i++) {
+            commands[i] = mix[random.nextInt(mix.length)];
+            responses[i] = SlashCommandHandler.respond(commands[i], rand);
+        }
+
+        Path directory = Files.createTempDirectory("journal-bench");
+        try (CommandJournal journal = new CommandJournal(directory, 16 << 20, 4,
+                CommandJournal.DEFAULT_FLUSH_EVERY)) {
+            System.out.println(colorize(size + " commands per round, journal in " + directory, Color.PURPLE));
+            for (int r = 0; r < rounds; r++) {
+                int length = 0;
+                long start = System.nanoTime();
+                for (String command : commands) {
+                    length += SlashCommandHandler.respond(command, rand).length();
+                }
+                long plain = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (String command : commands) {
+                    String response = SlashCommandHandler.respond(command, rand);
+                    journal.append(command, response);
+                    length += response.length();
+                }
+                long journaled = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    journal.append(commands[i], responses[i]);
+                }
+                long append = System.nanoTime() - start;
+                sink = length;
+
+                System.out.println(String.format("round %d: dispatch %.0f ns/cmd, dispatch+journal %.0f ns/cmd "
+                        + "(overhead %.0f ns), append alone %.0f ns/record", r + 1, (double) plain / size,
+                        (double) journaled / size, (double) (journaled - plain) / size, (double) append / size));
+            }
+            journal.flush();
+
+            // the last "append alone" round wrote commands[i] -> responses[i]; check its tail
+            long readable = JournalReader.read(directory, false, (micros, command, response) -> {
+            });
+            int[] mismatches = new int[1];
+            long total = journal.records();
+            // records are numbered from the first one appended; the ring kept the newest ones
+            long skipped = total - readable;
+            JournalReader.read(directory, false, new JournalReader.RecordHandler() {
+                long index = skipped;
+
+                @Override
+                public void record(long micros, String command, String response) {
+                    int i = (int) (index++ % size);
+                    if (index > total - size && (!command.equals(commands[i]) || !response.equals(responses[i]))) {
+                        mismatches[0]++;
+                    }
+                }
+            });
+            System.out.println(String.format("Read back %,d of %,d records (older segments recycled), "
+                    + "%d mismatches in the last round", readable, total, mismatches[0]));
+        } finally {
+            delete(directory);
+        }
+    }
+}
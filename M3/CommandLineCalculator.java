@@ -1,5 +1,6 @@
 package M3;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 /*
 Challenge 1: Command-Line Calculator
@@ -20,12 +21,24 @@ Challenge 1: Command-Line Calculator
 
 public class CommandLineCalculator extends BaseClass {
     private static String ucid = "rk975"; // <-- change to your ucid
+    private static final ThreadLocal<DecimalFormat[]> FORMATS = ThreadLocal.withInitial(() -> new DecimalFormat[32]);
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--stream")) {
+            // results go to stdout, so no header/footer in this mode
+            CalculatorStream.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--expr")) {
+            CompiledExpression.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         printHeader(ucid, 1, "Objective: Implement a calculator using command-line arguments.");
 
         if (args.length != 3) {
             System.out.println("Usage: java M3.CommandLineCalculator <num1> <operator> <num2>");
+            System.out.println("   or: java M3.CommandLineCalculator --stream [in|-] [out|-] [threads]");
+            System.out.println("   or: java M3.CommandLineCalculator --expr \"<expression>\" [name=value ...|table.csv|-]");
             printFooter(ucid, 1);
             return;
         }
@@ -37,32 +50,12 @@ public class CommandLineCalculator extends BaseClass {
             String num2Str = args[2];
             String operator = args[1]; 
             // check if operator is addition or subtraction
-        if (!operator.equals("+") && !operator.equals("-")) {
-            System.out.println("Error: Unsupported operator. Use + or -.");
-            printFooter(ucid, 1);
-            return;
-}
-
-
-            // check the type of each number and choose appropriate parsing
-            double num1 = Double.parseDouble(num1Str);
-            double num2 = Double.parseDouble(num2Str);
-            double result = operator.equals("+") ? num1 + num2 : num1 - num2; 
-
-            int precision1 = getDecimalPlaces(num1Str);
-            int precision2 = getDecimalPlaces(num2Str);
-            int maxPrecision = Math.max(precision1, precision2);
-            // generate the equation result (Important: ensure decimals display as the
-            // longest decimal passed)
-            StringBuilder pattern = new StringBuilder("0");
-            if (maxPrecision > 0 ){
-                pattern.append(".");
-                for (int i = 0; i < maxPrecision; i++){
-                    pattern.append("0");
-                }
+            if (!isSupported(operator)) {
+                System.out.println("Error: Unsupported operator. Use + or -.");
+                printFooter(ucid, 1);
+                return;
             }
-            DecimalFormat df = new DecimalFormat(pattern.toString());
-            System.out.println("Result: " + df.format(result));
+            System.out.println("Result: " + evaluate(num1Str, operator, num2Str));
             // i.e., 0.1 + 0.2 would show as one decimal place (0.3), 0.11 + 0.2 would shows
             // as two (0.31), etc
 
@@ -72,7 +65,61 @@ public class CommandLineCalculator extends BaseClass {
 
         printFooter(ucid, 1);
     }
-    private static int getDecimalPlaces(String numStr){
+
+    public static boolean isSupported(String operator) {
+        return operator.equals("+") || operator.equals("-");
+    }
+
+    /**
+     * Evaluates {@code num1Str operator num2Str} and formats the result with as many
+     * decimals as the longer operand.
+     *
+     * @throws NumberFormatException if an operand is not a number
+     */
+    public static String evaluate(String num1Str, String operator, String num2Str) {
+        // plain decimals are added exactly as scaled longs
+        String exact = FixedDecimal.evaluate(num1Str, operator, num2Str);
+        if (exact != null) {
+            return exact;
+        }
+        // check the type of each number and choose appropriate parsing
+        double num1 = Double.parseDouble(num1Str);
+        double num2 = Double.parseDouble(num2Str);
+        double result = operator.equals("+") ? num1 + num2 : num1 - num2; 
+
+        int precision1 = getDecimalPlaces(num1Str);
+        int precision2 = getDecimalPlaces(num2Str);
+        int maxPrecision = Math.max(precision1, precision2);
+        // generate the equation result (Important: ensure decimals display as the
+        // longest decimal passed)
+        return format(maxPrecision).format(result);
+    }
+
+    /**
+     * "0", "0.0", "0.00", ... formatter for {@code precision} decimals. DecimalFormat is
+     * not thread-safe, so every thread keeps its own instance per precision instead of
+     * building a new pattern and formatter for each result.
+     */
+    static DecimalFormat format(int precision) {
+        DecimalFormat[] formats = FORMATS.get();
+        if (precision < formats.length && formats[precision] != null) {
+            return formats[precision];
+        }
+        StringBuilder pattern = new StringBuilder("0");
+        if (precision > 0 ){
+            pattern.append(".");
+            for (int i = 0; i < precision; i++){
+                pattern.append("0");
+            }
+        }
+        DecimalFormat df = new DecimalFormat(pattern.toString());
+        if (precision < formats.length) {
+            formats[precision] = df;
+        }
+        return df;
+    }
+
+    static int getDecimalPlaces(String numStr){
         int index = numStr.indexOf(".");
         return index < 0 ? 0 : numStr.length() - index - 1; 
     }
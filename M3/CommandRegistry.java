@@ -0,0 +1,148 @@
+package M3;
+
+import Common.RunMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+Case-insensitive slash command dispatch
+---------------------------------------
+- Handlers are registered by name ("/greet", "/roll", ...); a command line is
+  "<name>" or "<name> <argument>" and the argument is everything after the
+  first space
+- Lookup hashes the name straight out of the input line with ASCII case folding
+  into an open-addressed table kept at most half full, then confirms with
+  regionMatches(ignoreCase): no toLowerCase() copy, no split, no regex, and the
+  cost does not grow with the number of registered commands
+- Unknown names get the registry's fallback response
+- With -Dmetrics=table|json every dispatch is timed into RunMetrics under
+  "slash <name>"
+*/
+
+public final class CommandRegistry {
+    /** Runs one command; {@code argument} is null when the line has no space. */
+    @FunctionalInterface
+    public interface Handler {
+        String handle(String argument, Random rand);
+    }
+
+    private static final class Command {
+        final String name;
+        final Handler handler;
+        final String metricsLabel;
+
+        Command(String name, Handler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.metricsLabel = "slash " + name;
+        }
+    }
+
+    private final String unknownResponse;
+    private Command[] table = new Command[16];
+    private int size;
+
+    public CommandRegistry(String unknownResponse) {
+        this.unknownResponse = unknownResponse;
+    }
+
+    /**
+     * Adds a command; names are matched ignoring case.
+     *
+     * @throws IllegalArgumentException if the name is empty, contains a space or is taken
+     */
+    public CommandRegistry register(String name, Handler handler) {
+        if (name.isEmpty() || name.indexOf(' ') >= 0) {
+            throw new IllegalArgumentException("invalid command name: \"" + name + "\"");
+        }
+        if (find(name, name.length()) != null) {
+            throw new IllegalArgumentException("command already registered: " + name);
+        }
+        if ((size + 1) * 2 > table.length) {
+            Command[] old = table;
+            table = new Command[old.length * 2];
+            for (Command command : old) {
+                if (command != null) {
+                    insert(command);
+                }
+            }
+        }
+        insert(new Command(name.toLowerCase(Locale.ROOT), handler));
+        size++;
+        return this;
+    }
+
+    private void insert(Command command) {
+        int mask = table.length - 1;
+        int i = hash(command.name, command.name.length()) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = command;
+    }
+
+    /** The handler registered under {@code name} (any case), or null. */
+    public Handler handler(String name) {
+        Command command = find(name, name.length());
+        return command == null ? null : command.handler;
+    }
+
+    /** Registered names, lower case, in no particular order. */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(size);
+        for (Command command : table) {
+            if (command != null) {
+                names.add(command.name);
+            }
+        }
+        return names;
+    }
+
+    /** Runs the command on {@code input} and returns its response. */
+    public String dispatch(String input, Random rand) {
+        int space = input.indexOf(' ');
+        int end = space < 0 ? input.length() : space;
+        Command command = find(input, end);
+        if (command == null) {
+            return unknownResponse;
+        }
+        String argument = space < 0 ? null : input.substring(space + 1);
+        if (!RunMetrics.enabled()) {
+            return command.handler.handle(argument, rand);
+        }
+        long start = System.nanoTime();
+        String response = command.handler.handle(argument, rand);
+        RunMetrics.record(command.metricsLabel, System.nanoTime() - start, 0, 1);
+        return response;
+    }
+
+    private Command find(String input, int end) {
+        Command[] commands = table;
+        int mask = commands.length - 1;
+        for (int i = hash(input, end) & mask;; i = (i + 1) & mask) {
+            Command command = commands[i];
+            if (command == null) {
+                return null;
+            }
+            if (command.name.length() == end && input.regionMatches(true, 0, command.name, 0, end)) {
+                return command;
+            }
+        }
+    }
+
+    private static int hash(String text, int end) {
+        int h = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= 128) {
+                c = Character.toLowerCase(c);
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,98 @@
+package M3;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/*
+Slash command dispatch: if/else chain vs CommandRegistry
+--------------------------------------------------------
+- Usage: java M3.CommandRegistryBenchmark [commands] [rounds]
+- A fixed-seed stream of greet / roll / echo / quit / unknown commands in mixed
+  case is dispatched by the original chain (toLowerCase per branch, split,
+  String.matches) and by SlashCommandHandler's registry
+- "registry+200" registers 200 extra commands first, to show that dispatch cost
+  does not depend on how many commands exist
+*/
+
+public class CommandRegistryBenchmark extends BaseClass {
+    // keeps results live so the JIT cannot drop the loops
+    static volatile int sink;
+
+    private interface Dispatcher {
+        String respond(String input, Random rand);
+    }
+
+    // SlashCommandHandler.respond before the registry
+    private static String legacy(String input, Random rand) {
+        if (input.equalsIgnoreCase("/quit")) {
+            return "Exiting the program";
+        } else if (input.toLowerCase().startsWith("/greet")) {
+            String[] parts = input.split(" ", 2);
+            if (parts.length < 2 || parts[1].isEmpty()) {
+                return "Error, missing name for /greet.";
+            }
+            return "Hello, " + parts[1] + "!";
+        } else if (input.toLowerCase().startsWith("/roll ")) {
+            String[] parts = input.split(" ", 2);
+            if (parts.length < 2 || !parts[1].matches("\\d+d\\d+")) {
+                return "Error, invalid format. Use /roll <num>d<sides>.";
+            }
+            String[] diceParts = parts[1].toLowerCase().split("d");
+            int num = Integer.parseInt(diceParts[0]);
+            int sides = Integer.parseInt(diceParts[1]);
+            return "Rolled " + num + "d" + sides + " and got " + SlashCommandHandler.roll(num, sides, rand) + "!";
+        } else if (input.toLowerCase().startsWith("/echo ")) {
+            String[] parts = input.split(" ", 2);
+            if (parts.length < 2 || parts[1].isEmpty()) {
+                return "Error: Missing message for /echo.";
+            }
+            return parts[1];
+        }
+        return "Error: Unrecognized command.";
+    }
+
+    private static long time(Dispatcher dispatcher, String[] commands) {
+        Random rand = new Random(3);
+        int length = 0;
+        long start = System.nanoTime();
+        for (String command : commands) {
+            length += dispatcher.respond(command, rand).length();
+        }
+        sink = length;
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] mix = { "/greet Alice", "/GREET Bob", "/roll 3d6", "/Roll 2d20", "/roll x", "/echo hello there",
+                "/ECHO shout", "/quit", "/unknown thing", "/greet" };
+        SplittableRandom random = new SplittableRandom(9);
+        String[] commands = new String[size];
+        for (int i = 0; i < size; i++) {
+            commands[i] = mix[random.nextInt(mix.length)];
+        }
+
+        CommandRegistry crowded = new CommandRegistry("Error: Unrecognized command.");
+        for (int i = 0; i < 200; i++) {
+            crowded.register("/extra" + i, (argument, rand) -> argument);
+        }
+        for (String name : SlashCommandHandler.COMMANDS.names()) {
+            crowded.register(name, SlashCommandHandler.COMMANDS.handler(name));
+        }
+
+        String[] names = { "legacy chain", "registry", "registry+200" };
+        Dispatcher[] dispatchers = { CommandRegistryBenchmark::legacy, SlashCommandHandler::respond,
+                (input, rand) -> crowded.dispatch(input, rand) };
+        System.out.println(colorize(size + " mixed commands", Color.PURPLE));
+        for (int r = 0; r < rounds; r++) {
+            StringBuilder line = new StringBuilder("round " + (r + 1) + ":");
+            for (int d = 0; d < dispatchers.length; d++) {
+                long nanos = time(dispatchers[d], commands);
+                line.append(String.format("  %s %.1f ms (%.0f ns/cmd)", names[d], nanos / 1e6, (double) nanos / size));
+            }
+            System.out.println(line);
+        }
+    }
+}
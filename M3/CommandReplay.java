@@ -0,0 +1,288 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Bulk replay of slash command logs
+---------------------------------
+- Usage: java M3.CommandReplay <in|-> [out|-] [threads]
+  (also: java M3.SlashCommandHandler --replay <in|-> [out|-] [threads])
+- Every input line is one command (trimmed, like the console loop) and produces
+  exactly one response line, without the "Enter command: " prompts
+- A reader thread cuts the input into 4MB blocks at the last newline
+  (LineBlockReader) and hands each block, with its sequence number, to a worker pool
+- Workers put their block's responses into a reorder buffer of 4 * threads slots;
+  the writer takes them strictly in sequence order, one channel write per block
+- With -Dslash.journal the writer also journals each block's commands, so the
+  audit trail holds exactly the written session, in order
+- Backpressure: the reader needs a free slot before it can hand out the next
+  block, so at most 4 * threads blocks are read but not yet written
+- /quit is an ordered barrier: its response is the last one written; the reader
+  stops handing out blocks, workers stop at the first line past it, and the
+  replay returns without waiting for a reader still blocked on stdin
+*/
+
+public class CommandReplay {
+    static final int BLOCK_SIZE = 4 << 20;
+    private static final Result END = new Result(new byte[0], null, 0, false);
+
+    /** Responses for one block. */
+    private static final class Result {
+        final byte[] bytes;
+        // input, response, input, ... for the journal; null when journaling is off
+        final String[] journal;
+        final long commands;
+        final boolean quit;
+        final Throwable failure;
+
+        Result(byte[] bytes, String[] journal, long commands, boolean quit) {
+            this.bytes = bytes;
+            this.journal = journal;
+            this.commands = commands;
+            this.quit = quit;
+            this.failure = null;
+        }
+
+        Result(Throwable failure) {
+            this.bytes = null;
+            this.journal = null;
+            this.commands = 0;
+            this.quit = false;
+            this.failure = failure;
+        }
+    }
+
+    /** Fixed window of results indexed by sequence number; take() returns them in order. */
+    private static final class ReorderBuffer {
+        private final Result[] slots;
+        private final Semaphore free;
+        private long next;
+
+        ReorderBuffer(int window) {
+            slots = new Result[window];
+            free = new Semaphore(window);
+        }
+
+        /** Reserves the slot for the next sequence number; false if the replay stopped meanwhile. */
+        boolean reserve(ReplayState state) throws InterruptedException {
+            while (!free.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (state.stopped) {
+                    return false;
+                }
+            }
+            return !state.stopped;
+        }
+
+        synchronized void put(long sequence, Result result) {
+            slots[(int) (sequence % slots.length)] = result;
+            notifyAll();
+        }
+
+        synchronized Result take() throws InterruptedException {
+            int slot = (int) (next % slots.length);
+            while (slots[slot] == null) {
+                wait();
+            }
+            Result result = slots[slot];
+            slots[slot] = null;
+            next++;
+            return result;
+        }
+
+        void release() {
+            free.release();
+        }
+    }
+
+    private static final class ReplayState {
+        // set once the writer is done
+        volatile boolean stopped;
+        // lowest sequence number of a block that ran /quit
+        final AtomicLong quitAt = new AtomicLong(Long.MAX_VALUE);
+
+        boolean quit() {
+            return quitAt.get() != Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Runs every command of {@code in} and writes the responses to {@code out} in input
+     * order, stopping after the first /quit.
+     *
+     * @return number of commands whose responses were written
+     */
+    public static long replay(ReadableByteChannel in, WritableByteChannel out, int threads)
+            throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        // a daemon thread, so a reader still blocked on stdin after /quit does not keep the JVM alive
+        ExecutorService reader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "replay-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ReorderBuffer buffer = new ReorderBuffer(threads * 4);
+        ReplayState state = new ReplayState();
+        Future<?> reading = reader.submit(() -> {
+            read(in, buffer, workers, state);
+            return null;
+        });
+        long commands = 0;
+        boolean quit = false;
+        try {
+            while (true) {
+                Result result = buffer.take();
+                if (result == END) {
+                    break;
+                }
+                if (result.failure != null) {
+                    throw new IOException("replay failed", result.failure);
+                }
+                if (result.journal != null) {
+                    for (int i = 0; i < result.journal.length; i += 2) {
+                        SlashCommandHandler.journal(result.journal[i], result.journal[i + 1]);
+                    }
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(result.bytes);
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                commands += result.commands;
+                buffer.release();
+                if (result.quit) {
+                    quit = true;
+                    break;
+                }
+            }
+            state.stopped = true;
+            // after /quit the reader may be blocked on input that never ends; it is interrupted below
+            if (!quit) {
+                reading.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("reading commands failed", e.getCause());
+        } finally {
+            state.stopped = true;
+            reader.shutdownNow();
+            workers.shutdownNow();
+        }
+        return commands;
+    }
+
+    private static void read(ReadableByteChannel in, ReorderBuffer buffer, ExecutorService workers,
+            ReplayState state) throws IOException, InterruptedException {
+        LineBlockReader lines = new LineBlockReader(in, BLOCK_SIZE);
+        long sequence = 0;
+        Throwable failure = null;
+        try {
+            byte[] block;
+            while (!state.stopped && !state.quit() && (block = lines.next()) != null) {
+                if (!buffer.reserve(state)) {
+                    break;
+                }
+                long blockSequence = sequence++;
+                byte[] commands = block;
+                workers.execute(() -> buffer.put(blockSequence, run(commands, blockSequence, state)));
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            // tell the writer where the input ended (unless /quit already stopped it)
+            if (buffer.reserve(state)) {
+                buffer.put(sequence, failure == null ? END : new Result(failure));
+            }
+        }
+    }
+
+    private static Result run(byte[] block, long sequence, ReplayState state) {
+        try {
+            StringBuilder responses = new StringBuilder(block.length * 2);
+            List<String> journal = SlashCommandHandler.journaling() ? new ArrayList<>() : null;
+            long commands = 0;
+            int start = 0;
+            for (int i = 0; i < block.length; i++) {
+                if (block[i] != '\n') {
+                    continue;
+                }
+                if (sequence > state.quitAt.get()) {
+                    // an earlier block ran /quit: nothing from here on is part of the session
+                    return new Result(new byte[0], null, 0, false);
+                }
+                String input = new String(block, start, i - start, StandardCharsets.UTF_8).trim();
+                start = i + 1;
+                String response = SlashCommandHandler.COMMANDS.dispatch(input, ThreadLocalRandom.current());
+                responses.append(response).append('\n');
+                if (journal != null) {
+                    journal.add(input);
+                    journal.add(response);
+                }
+                commands++;
+                if (input.equalsIgnoreCase("/quit")) {
+                    // later lines belong to a session that has already ended
+                    state.quitAt.accumulateAndGet(sequence, Math::min);
+                    return result(responses, journal, commands, true);
+                }
+            }
+            return result(responses, journal, commands, false);
+        } catch (RuntimeException | Error e) {
+            return new Result(e);
+        }
+    }
+
+    private static Result result(StringBuilder responses, List<String> journal, long commands, boolean quit) {
+        return new Result(responses.toString().getBytes(StandardCharsets.UTF_8),
+                journal == null ? null : journal.toArray(new String[0]), commands, quit);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java M3.CommandReplay <in|-> [out|-] [threads]");
+            return;
+        }
+        String outName = args.length > 1 ? args[1] : "-";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        // System.in / System.out so the mode also works under ToolDaemon; flushed, never closed
+        ReadableByteChannel in = args[0].equals("-") ? Channels.newChannel(System.in)
+                : FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ);
+        WritableByteChannel out = outName.equals("-") ? Channels.newChannel(System.out)
+                : FileChannel.open(Paths.get(outName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        long start = System.nanoTime();
+        long commands;
+        try {
+            commands = replay(in, out, threads);
+        } finally {
+            if (!args[0].equals("-")) {
+                in.close();
+            }
+            if (outName.equals("-")) {
+                System.out.flush();
+            } else {
+                out.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!outName.equals("-")) {
+            System.out.println(String.format("Replayed %,d commands with %d threads in %.1f ms (%,.0f/s)", commands,
+                    threads, elapsed / 1e6, commands / (elapsed / 1e9)));
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package M3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Compiled arithmetic expressions for CommandLineCalculator
+---------------------------------------------------------
+- Grammar: + - * / % with the usual precedence, unary +/-, parentheses, decimal
+  literals and named variables ([A-Za-z_][A-Za-z0-9_]*)
+- compile() parses once into a flat postfix instruction array (opcode in the low
+  8 bits, constant / variable slot above it); literal-only sub-expressions are
+  folded at compile time
+- evaluate(values, stack) runs the instructions over one row of variable values
+  with a caller-owned stack: no parsing and no allocation per row
+- Output keeps the calculator's decimal-place rule: as many decimals as the
+  longest literal or variable value used (see format)
+- Usage: java M3.CompiledExpression "<expression>" [name=value ...]
+         java M3.CompiledExpression "<expression>" <table.csv|->
+  (the table's first line names the columns; one result line is written per row)
+- Invalid expressions or values print one "Invalid input: ..." line; a table row
+  that is too short or not numeric is reported on stderr with its line number and
+  skipped
+*/
+
+public final class CompiledExpression {
+    private static final int CONST = 0;
+    private static final int LOAD = 1;
+    private static final int ADD = 2;
+    private static final int SUB = 3;
+    private static final int MUL = 4;
+    private static final int DIV = 5;
+    private static final int MOD = 6;
+    private static final int NEG = 7;
+
+    private final String source;
+    private final int[] code;
+    private final double[] constants;
+    private final String[] variables;
+    private final int stackSize;
+    private final int literalPrecision;
+
+    private CompiledExpression(String source, int[] code, double[] constants, String[] variables, int stackSize,
+            int literalPrecision) {
+        this.source = source;
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.stackSize = stackSize;
+        this.literalPrecision = literalPrecision;
+    }
+
+    /**
+     * Parses {@code expression} into its instruction form.
+     *
+     * @throws IllegalArgumentException on a syntax error, with the offending position
+     */
+    public static CompiledExpression compile(String expression) {
+        Parser parser = new Parser(expression);
+        parser.expression();
+        if (parser.pos < expression.length()) {
+            throw parser.error("unexpected '" + expression.charAt(parser.pos) + "'");
+        }
+        int[] code = new int[parser.code.size()];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = parser.code.get(i);
+        }
+        double[] constants = new double[parser.constants.size()];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = parser.constants.get(i);
+        }
+        return new CompiledExpression(expression, code, constants, parser.variables.toArray(new String[0]),
+                parser.maxDepth, parser.literalPrecision);
+    }
+
+    /** Variable names in slot order (order of first appearance). */
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    /** Length of the stack array evaluate() needs. */
+    public int stackSize() {
+        return stackSize;
+    }
+
+    /** Most decimals of any literal in the expression. */
+    public int literalPrecision() {
+        return literalPrecision;
+    }
+
+    public double[] newStack() {
+        return new double[stackSize];
+    }
+
+    /**
+     * Evaluates the expression with {@code values[slot]} bound to each variable.
+     * {@code stack} must hold at least stackSize() elements; reuse it across rows.
+     */
+    public double evaluate(double[] values, double[] stack) {
+        int sp = 0;
+        for (int instruction : code) {
+            switch (instruction & 0xFF) {
+                case CONST:
+                    stack[sp++] = constants[instruction >>> 8];
+                    break;
+                case LOAD:
+                    stack[sp++] = values[instruction >>> 8];
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case MUL:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case DIV:
+                    sp--;
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case MOD:
+                    sp--;
+                    stack[sp - 1] %= stack[sp];
+                    break;
+                default:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    /** Formats {@code result} with max(literal decimals, {@code valuePrecision}) decimals. */
+    public String format(double result, int valuePrecision) {
+        return CommandLineCalculator.format(Math.max(literalPrecision, valuePrecision)).format(result);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static final class Parser {
+        final String text;
+        int pos;
+        final List<Integer> code = new ArrayList<>();
+        final List<Double> constants = new ArrayList<>();
+        final List<String> variables = new ArrayList<>();
+        int depth;
+        int maxDepth;
+        int literalPrecision;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " in \"" + text + "\"");
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        // expression := term (('+' | '-') term)*
+        void expression() {
+            term();
+            while (true) {
+                if (accept('+')) {
+                    term();
+                    binary(ADD);
+                } else if (accept('-')) {
+                    term();
+                    binary(SUB);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // term := unary (('*' | '/' | '%') unary)*
+        private void term() {
+            unary();
+            while (true) {
+                if (accept('*')) {
+                    unary();
+                    binary(MUL);
+                } else if (accept('/')) {
+                    unary();
+                    binary(DIV);
+                } else if (accept('%')) {
+                    unary();
+                    binary(MOD);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // unary := ('-' | '+') unary | primary
+        private void unary() {
+            if (accept('-')) {
+                unary();
+                int last = code.size() - 1;
+                if ((code.get(last) & 0xFF) == CONST) {
+                    int slot = code.get(last) >>> 8;
+                    constants.set(slot, -constants.get(slot));
+                } else {
+                    code.add(NEG);
+                }
+            } else if (accept('+')) {
+                unary();
+            } else {
+                primary();
+            }
+        }
+
+        // primary := number | identifier | '(' expression ')'
+        private void primary() {
+            skipSpaces();
+            if (accept('(')) {
+                expression();
+                if (!accept(')')) {
+                    throw error("expected ')'");
+                }
+                return;
+            }
+            if (pos == text.length()) {
+                throw error("unexpected end of expression");
+            }
+            char c = text.charAt(pos);
+            int start = pos;
+            if (Character.isDigit(c) || c == '.') {
+                while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                    pos++;
+                }
+                String literal = text.substring(start, pos);
+                double value;
+                try {
+                    value = Double.parseDouble(literal);
+                } catch (NumberFormatException e) {
+                    pos = start;
+                    throw error("bad number '" + literal + "'");
+                }
+                literalPrecision = Math.max(literalPrecision, CommandLineCalculator.getDecimalPlaces(literal));
+                push(CONST, constant(value));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (pos < text.length()
+                        && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                    pos++;
+                }
+                String name = text.substring(start, pos);
+                int slot = variables.indexOf(name);
+                if (slot < 0) {
+                    slot = variables.size();
+                    variables.add(name);
+                }
+                push(LOAD, slot);
+            } else {
+                throw error("unexpected '" + c + "'");
+            }
+        }
+
+        private int constant(double value) {
+            constants.add(value);
+            return constants.size() - 1;
+        }
+
+        private void push(int op, int arg) {
+            code.add(op | arg << 8);
+            maxDepth = Math.max(maxDepth, ++depth);
+        }
+
+        private void binary(int op) {
+            depth--;
+            int n = code.size();
+            int left = code.get(n - 2);
+            int right = code.get(n - 1);
+            if ((left & 0xFF) == CONST && (right & 0xFF) == CONST) {
+                // fold literal-only operations; the right constant becomes unused
+                double a = constants.get(left >>> 8);
+                double b = constants.get(right >>> 8);
+                double folded = op == ADD ? a + b : op == SUB ? a - b : op == MUL ? a * b : op == DIV ? a / b : a % b;
+                constants.set(left >>> 8, folded);
+                code.remove(n - 1);
+                return;
+            }
+            code.add(op);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java M3.CompiledExpression \"<expression>\" [name=value ...]");
+            System.out.println("   or: java M3.CompiledExpression \"<expression>\" <table.csv|->");
+            return;
+        }
+        try {
+            evaluate(args);
+        } catch (IllegalArgumentException e) {
+            // also NumberFormatException; one line like the calculator's other modes, not a stack trace
+            System.out.println("Invalid input: " + e.getMessage());
+        }
+    }
+
+    private static void evaluate(String[] args) throws IOException {
+        CompiledExpression expression = compile(args[0]);
+        String[] names = expression.variables();
+        if (args.length == 2 && !args[1].contains("=")) {
+            evaluateTable(expression, args[1]);
+            return;
+        }
+        double[] values = new double[names.length];
+        boolean[] bound = new boolean[names.length];
+        int precision = 0;
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            int slot = Arrays.asList(names).indexOf(args[i].substring(0, Math.max(eq, 0)));
+            if (eq < 0 || slot < 0) {
+                throw new IllegalArgumentException("not a variable of the expression: " + args[i]);
+            }
+            String value = args[i].substring(eq + 1);
+            values[slot] = Double.parseDouble(value);
+            bound[slot] = true;
+            precision = Math.max(precision, CommandLineCalculator.getDecimalPlaces(value));
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (!bound[i]) {
+                throw new IllegalArgumentException("no value for variable " + names[i]);
+            }
+        }
+        System.out.println(expression.format(expression.evaluate(values, expression.newStack()), precision));
+    }
+
+    private static void evaluateTable(CompiledExpression expression, String table) throws IOException {
+        String[] names = expression.variables();
+        BufferedReader reader = table.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(table), StandardCharsets.UTF_8);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                1 << 16);
+        try {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            List<String> columns = Arrays.asList(header.split(",", -1));
+            int[] columnOf = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                columnOf[i] = columns.indexOf(names[i]);
+                if (columnOf[i] < 0) {
+                    throw new IllegalArgumentException("no column for variable " + names[i]);
+                }
+            }
+            double[] values = new double[names.length];
+            double[] stack = expression.newStack();
+            String line;
+            int lineNumber = 1;
+            rows:
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split(",", -1);
+                int precision = 0;
+                for (int i = 0; i < names.length; i++) {
+                    // a bad row is reported on stderr and skipped; the rest of the table still runs
+                    if (columnOf[i] >= fields.length) {
+                        System.err.println("Invalid input on line " + lineNumber + ": no value for column "
+                                + names[i]);
+                        continue rows;
+                    }
+                    String field = fields[columnOf[i]].trim();
+                    try {
+                        values[i] = Double.parseDouble(field);
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid input on line " + lineNumber + ": " + names[i]
+                                + " is not a number: " + field);
+                        continue rows;
+                    }
+                    precision = Math.max(precision, CommandLineCalculator.getDecimalPlaces(field));
+                }
+                writer.write(expression.format(expression.evaluate(values, stack), precision));
+                writer.newLine();
+            }
+        } finally {
+            reader.close();
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package M3;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+/*
+Sum of <num> dice with <sides> sides without rolling every die
+--------------------------------------------------------------
+- Up to 32 dice are simply rolled one by one
+- Otherwise, when the sum has at most 65536 possible values and building its
+  distribution takes at most 2^25 steps, the exact probability of every sum is
+  computed once by convolution (a sliding window over the previous die count),
+  stored as a cumulative table and sampled with one uniform draw + binary search
+- Below 1024 dice with too many sides for a table, rolling one by one is still
+  cheap (at most 1024 draws)
+- From 1024 dice on, the sum is drawn from a normal distribution with the exact
+  mean n(s+1)/2 and variance n(s^2-1)/12, rounded (continuity correction) and
+  clamped to [n, n*s]. The die is symmetric, so the skew term of the error
+  vanishes and what is left shrinks like 1/n; DiceRollerCheck compares it with
+  the one-by-one loop
+- Totals are longs: Integer.MAX_VALUE dice with Integer.MAX_VALUE sides is still
+  far below Long.MAX_VALUE, so BigInteger is never needed
+- random() hands each thread its own SplittableRandom split from one root, so
+  concurrent rolls never share generator state; callers with their own (e.g.
+  seeded) generator pass it in and get reproducible rolls
+*/
+
+public final class DiceRoller {
+    static final int LOOP_MAX_DICE = 32;
+    static final int TABLE_MAX_OUTCOMES = 1 << 16;
+    static final long TABLE_MAX_WORK = 1L << 25;
+    static final int APPROXIMATE_MIN_DICE = 1024;
+    private static final int MAX_CACHED_TABLES = 64;
+
+    private static final SplittableRandom ROOT = new SplittableRandom();
+    private static final ThreadLocal<SplittableRandom> RANDOM = ThreadLocal.withInitial(DiceRoller::split);
+    private static final Map<Long, double[]> TABLES = new ConcurrentHashMap<>();
+
+    private DiceRoller() {
+    }
+
+    private static synchronized SplittableRandom split() {
+        return ROOT.split();
+    }
+
+    /** This thread's generator. */
+    public static SplittableRandom random() {
+        return RANDOM.get();
+    }
+
+    /** Rolls {@code num} dice with {@code sides} sides using this thread's generator. */
+    public static long roll(int num, int sides) {
+        return roll(num, sides, random());
+    }
+
+    /**
+     * Sum of {@code num} dice with {@code sides} sides.
+     *
+     * @throws IllegalArgumentException if num is negative, or sides is not positive while num > 0
+     */
+    public static long roll(int num, int sides, RandomGenerator random) {
+        if (num < 0 || (num > 0 && sides < 1)) {
+            throw new IllegalArgumentException("cannot roll " + num + "d" + sides);
+        }
+        if (num == 0 || sides == 1) {
+            return num;
+        }
+        if (num <= LOOP_MAX_DICE) {
+            return rollEach(num, sides, random);
+        }
+        double[] cdf = table(num, sides);
+        if (cdf != null) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            // exact hits return the index, misses return -(insertion point) - 1
+            index = index >= 0 ? index + 1 : -index - 1;
+            return num + Math.min(index, cdf.length - 1);
+        }
+        if (num < APPROXIMATE_MIN_DICE) {
+            return rollEach(num, sides, random);
+        }
+        return approximate(num, sides, random);
+    }
+
+    static long rollEach(int num, int sides, RandomGenerator random) {
+        long total = 0;
+        for (int i = 0; i < num; i++) {
+            total += random.nextInt(sides) + 1;
+        }
+        return total;
+    }
+
+    static long approximate(int num, int sides, RandomGenerator random) {
+        double mean = num * (sides + 1.0) / 2;
+        double deviation = Math.sqrt(num * ((double) sides * sides - 1) / 12);
+        long total = Math.round(mean + deviation * random.nextGaussian());
+        return Math.max(num, Math.min((long) num * sides, total));
+    }
+
+    /**
+     * Cumulative probabilities of the sums num..num*sides (index 0 = sum num), or null
+     * when the table would be too large to build.
+     */
+    static double[] table(int num, int sides) {
+        long outcomes = (long) num * (sides - 1) + 1;
+        if (outcomes > TABLE_MAX_OUTCOMES || num * outcomes > TABLE_MAX_WORK) {
+            return null;
+        }
+        Long key = (long) num << 32 | sides;
+        double[] cdf = TABLES.get(key);
+        if (cdf == null) {
+            if (TABLES.size() >= MAX_CACHED_TABLES) {
+                TABLES.clear();
+            }
+            // concurrent first rolls of the same dice wait for one build instead of each building it
+            cdf = TABLES.computeIfAbsent(key, k -> build(num, sides, (int) outcomes));
+        }
+        return cdf;
+    }
+
+    private static double[] build(int num, int sides, int outcomes) {
+        // pmf[k] = probability that the dice so far sum to (count + k)
+        double[] pmf = new double[outcomes];
+        double[] next = new double[outcomes];
+        Arrays.fill(pmf, 0, sides, 1.0 / sides);
+        int width = sides;
+        for (int count = 2; count <= num; count++) {
+            int nextWidth = width + sides - 1;
+            // next[k] = (pmf[k - sides + 1] + ... + pmf[k]) / sides
+            double window = 0;
+            for (int k = 0; k < nextWidth; k++) {
+                if (k < width) {
+                    window += pmf[k];
+                }
+                if (k - sides >= 0) {
+                    window -= pmf[k - sides];
+                }
+                next[k] = Math.max(0, window) / sides;
+            }
+            double[] swap = pmf;
+            pmf = next;
+            next = swap;
+            width = nextWidth;
+        }
+        double running = 0;
+        for (int k = 0; k < outcomes; k++) {
+            running += pmf[k];
+            pmf[k] = running;
+        }
+        return pmf;
+    }
+
+    /** Exact probabilities of the sums num..num*sides, or null if no table can be built. */
+    static double[] probabilities(int num, int sides) {
+        double[] cdf = table(num, sides);
+        if (cdf == null) {
+            return null;
+        }
+        double[] pmf = new double[cdf.length];
+        for (int k = 0; k < cdf.length; k++) {
+            pmf[k] = cdf[k] - (k == 0 ? 0 : cdf[k - 1]);
+        }
+        return pmf;
+    }
+}
@@ -0,0 +1,172 @@
+package M3;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+Distribution check for DiceRoller
+---------------------------------
+- Usage: java M3.DiceRollerCheck [samples]
+- Table and loop regimes: a chi-square goodness-of-fit test of DiceRoller's sums
+  and of the one-by-one loop's sums against the exact convolution probabilities
+  (bins with fewer than 5 expected hits are merged)
+- Normal-approximation regime: a two-sample Kolmogorov-Smirnov test of
+  DiceRoller against the one-by-one loop, plus mean / variance z-scores for a
+  count too large to loop over
+- A case passes when p > 0.001; fixed seeds make every run identical
+*/
+
+public class DiceRollerCheck extends BaseClass {
+    private static final double ALPHA = 0.001;
+    private static int failures;
+
+    private static void report(String name, double p, String detail) {
+        boolean pass = p > ALPHA;
+        if (!pass) {
+            failures++;
+        }
+        System.out.println(String.format("%-44s p = %-8.4f %s  %s", name, p, pass ? "PASS" : "FAIL", detail));
+    }
+
+    /** Chi-square test of samples (sums) against the exact pmf of num..num*sides. */
+    private static void chiSquare(String name, long[] samples, int num, double[] pmf) {
+        long[] counts = new long[pmf.length];
+        for (long sample : samples) {
+            counts[(int) (sample - num)]++;
+        }
+        double statistic = 0;
+        int bins = 0;
+        double expected = 0;
+        long observed = 0;
+        for (int k = 0; k < pmf.length; k++) {
+            expected += pmf[k] * samples.length;
+            observed += counts[k];
+            if (expected >= 5 || k == pmf.length - 1) {
+                statistic += (observed - expected) * (observed - expected) / Math.max(expected, 1e-300);
+                bins++;
+                expected = 0;
+                observed = 0;
+            }
+        }
+        int freedom = Math.max(1, bins - 1);
+        report(name, chiSquareSurvival(statistic, freedom), String.format("(chi2 %.1f, %d df)", statistic, freedom));
+    }
+
+    // Wilson-Hilferty: (X/k)^(1/3) is close to normal for a chi-square X with k df
+    private static double chiSquareSurvival(double x, int k) {
+        double z = (Math.cbrt(x / k) - (1 - 2.0 / (9 * k))) / Math.sqrt(2.0 / (9 * k));
+        return 1 - normalCdf(z);
+    }
+
+    private static double normalCdf(double z) {
+        // Abramowitz & Stegun 7.1.26 (|error| < 1.5e-7)
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027
+                + t * 1.061405429)))) * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+
+    /** Two-sample KS test; conservative for discrete sums. */
+    private static void kolmogorovSmirnov(String name, long[] a, long[] b) {
+        a = a.clone();
+        b = b.clone();
+        Arrays.sort(a);
+        Arrays.sort(b);
+        int i = 0;
+        int j = 0;
+        double d = 0;
+        while (i < a.length && j < b.length) {
+            long value = Math.min(a[i], b[j]);
+            while (i < a.length && a[i] == value) {
+                i++;
+            }
+            while (j < b.length && b[j] == value) {
+                j++;
+            }
+            d = Math.max(d, Math.abs((double) i / a.length - (double) j / b.length));
+        }
+        double n = (double) a.length * b.length / (a.length + b.length);
+        double lambda = (Math.sqrt(n) + 0.12 + 0.11 / Math.sqrt(n)) * d;
+        double p = 0;
+        for (int k = 1; k <= 100; k++) {
+            p += 2 * (k % 2 == 1 ? 1 : -1) * Math.exp(-2.0 * k * k * lambda * lambda);
+        }
+        report(name, Math.max(0, Math.min(1, p)), String.format("(D %.5f)", d));
+    }
+
+    private static void moments(String name, long[] samples, int num, int sides) {
+        double mean = num * (sides + 1.0) / 2;
+        double variance = num * ((double) sides * sides - 1) / 12;
+        double sum = 0;
+        for (long sample : samples) {
+            sum += sample - mean;
+        }
+        double sampleMean = sum / samples.length;
+        double squares = 0;
+        for (long sample : samples) {
+            squares += (sample - mean - sampleMean) * (sample - mean - sampleMean);
+        }
+        double sampleVariance = squares / (samples.length - 1);
+        // z-scores of the sample mean and variance (variance of s^2 ~ 2 sigma^4 / n for near-normal data)
+        double zMean = sampleMean / Math.sqrt(variance / samples.length);
+        double zVariance = (sampleVariance - variance) / (variance * Math.sqrt(2.0 / (samples.length - 1)));
+        double p = Math.min(2 * (1 - normalCdf(Math.abs(zMean))), 2 * (1 - normalCdf(Math.abs(zVariance))));
+        report(name, Math.min(1, 2 * p), String.format("(z mean %.2f, z variance %.2f)", zMean, zVariance));
+    }
+
+    private static long[] rollerSamples(int num, int sides, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = DiceRoller.roll(num, sides, random);
+        }
+        return samples;
+    }
+
+    private static long[] loopSamples(int num, int sides, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = DiceRoller.rollEach(num, sides, random);
+        }
+        return samples;
+    }
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.println(colorize("Exact distribution (chi-square)", Color.PURPLE));
+        int[][] exact = { { 3, 6 }, { 10, 6 }, { 33, 2 }, { 100, 6 }, { 50, 20 }, { 500, 6 }, { 64, 1000 } };
+        for (int[] dice : exact) {
+            double[] pmf = DiceRoller.probabilities(dice[0], dice[1]);
+            String label = dice[0] + "d" + dice[1];
+            chiSquare("DiceRoller " + label, rollerSamples(dice[0], dice[1], samples, 1), dice[0], pmf);
+            chiSquare("one by one " + label, loopSamples(dice[0], dice[1], samples, 2), dice[0], pmf);
+        }
+
+        System.out.println(colorize("Normal approximation vs one by one (KS)", Color.PURPLE));
+        int[][] approximate = { { 1024, 100 }, { 5000, 6 }, { 20000, 2 } };
+        int ksSamples = Math.min(samples, 20_000);
+        for (int[] dice : approximate) {
+            String label = dice[0] + "d" + dice[1];
+            kolmogorovSmirnov("DiceRoller vs one by one " + label, rollerSamples(dice[0], dice[1], ksSamples, 3),
+                    loopSamples(dice[0], dice[1], ksSamples, 4));
+        }
+
+        System.out.println(colorize("Huge counts (moments)", Color.PURPLE));
+        int[][] huge = { { 2_000_000_000, 6 }, { Integer.MAX_VALUE, Integer.MAX_VALUE } };
+        for (int[] dice : huge) {
+            long start = System.nanoTime();
+            long[] rolls = rollerSamples(dice[0], dice[1], samples, 5);
+            long nanos = System.nanoTime() - start;
+            moments(String.format("DiceRoller %dd%d (%.0f ns/roll)", dice[0], dice[1], (double) nanos / samples),
+                    rolls, dice[0], dice[1]);
+        }
+
+        System.out.println(failures == 0 ? "All distribution checks passed" : failures + " check(s) failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package M3;
+
+import java.util.SplittableRandom;
+
+/*
+Parse once vs parse per row for CompiledExpression
+--------------------------------------------------
+- Usage: java M3.ExpressionBenchmark [rows] [rounds]
+- "reparse" compiles the expression again for every row (what a one-shot
+  calculator does); "compiled" evaluates one compiled instance with a reused stack
+- Both produce the same results; the sums are compared as a sanity check
+*/
+
+public class ExpressionBenchmark extends BaseClass {
+    private static final String EXPRESSION = "(price * qty - discount) * (1 + tax / 100) % 1000 + -(qty - 3) / 2";
+
+    // keeps results live so the JIT cannot drop the loops
+    static volatile double sink;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        CompiledExpression compiled = CompiledExpression.compile(EXPRESSION);
+        int width = compiled.variables().length;
+        SplittableRandom random = new SplittableRandom(5);
+        double[][] table = new double[rows][width];
+        for (double[] row : table) {
+            for (int i = 0; i < width; i++) {
+                row[i] = Math.round(random.nextDouble(0, 500) * 100) / 100.0;
+            }
+        }
+
+        System.out.println(colorize(EXPRESSION + " over " + rows + " rows", Color.PURPLE));
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            double reparsed = 0;
+            for (double[] row : table) {
+                CompiledExpression expression = CompiledExpression.compile(EXPRESSION);
+                reparsed += expression.evaluate(row, expression.newStack());
+            }
+            long reparseNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double evaluated = 0;
+            double[] stack = compiled.newStack();
+            for (double[] row : table) {
+                evaluated += compiled.evaluate(row, stack);
+            }
+            long compiledNanos = System.nanoTime() - start;
+            sink = reparsed + evaluated;
+
+            System.out.println(String.format("round %d: reparse %.1f ms (%.0f ns/row)  compiled %.1f ms (%.1f ns/row)"
+                    + "  speedup %.0fx  %s", r + 1, reparseNanos / 1e6, (double) reparseNanos / rows,
+                    compiledNanos / 1e6, (double) compiledNanos / rows, (double) reparseNanos / compiledNanos,
+                    reparsed == evaluated ? "same" : "DIFFERENT"));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package M3;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormatSymbols;
+
+/*
+Exact fixed-point +/- for CommandLineCalculator
+-----------------------------------------------
+- A plain decimal operand ("-12.345", "+7", ".5", "5.") is held as an unscaled long
+  plus its scale (the same count getDecimalPlaces returns), e.g. -12.345 = (-12345, 3)
+- Both operands are brought to the larger scale and added/subtracted as longs, so
+  the result is exact and already has exactly max(scale1, scale2) decimals; no
+  rounding step is needed and nothing is allocated besides the result String
+- Results are formatted straight from the long with the default locale's zero digit,
+  minus sign and decimal separator, the same symbols DecimalFormat("0.00") uses
+- More than 18 significant digits, or a rescale / sum that overflows a long, falls
+  back to BigDecimal (still exact)
+- Anything that is not a plain decimal (exponents, "NaN", "Infinity", hex, surrounding
+  spaces, ...) returns null so the caller can keep its double-based behaviour
+*/
+
+public final class FixedDecimal {
+    private static final long NOT_PLAIN = -1;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final long[] POW10 = new long[MAX_LONG_DIGITS + 1];
+
+    private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols.getInstance();
+    private static final char ZERO = SYMBOLS.getZeroDigit();
+    private static final char MINUS = SYMBOLS.getMinusSign();
+    private static final char SEPARATOR = SYMBOLS.getDecimalSeparator();
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private FixedDecimal() {
+    }
+
+    /**
+     * Exact {@code num1Str operator num2Str} for "+" and "-", formatted with as many
+     * decimals as the longer operand; null when an operand is not a plain decimal.
+     */
+    public static String evaluate(String num1Str, String operator, String num2Str) {
+        boolean subtract = operator.equals("-");
+        long shape1 = scan(num1Str);
+        long shape2 = scan(num2Str);
+        if (shape1 == NOT_PLAIN || shape2 == NOT_PLAIN) {
+            return null;
+        }
+        int scale1 = scale(shape1);
+        int scale2 = scale(shape2);
+        int scale = Math.max(scale1, scale2);
+        if (digits(shape1) <= MAX_LONG_DIGITS && digits(shape2) <= MAX_LONG_DIGITS
+                && scale - Math.min(scale1, scale2) <= MAX_LONG_DIGITS) {
+            long a = unscaled(num1Str);
+            long b = unscaled(num2Str);
+            long factorA = POW10[scale - scale1];
+            long factorB = POW10[scale - scale2];
+            // both rescales and the sum must fit in a long
+            if (Math.abs(a) <= Long.MAX_VALUE / factorA && Math.abs(b) <= Long.MAX_VALUE / factorB) {
+                a *= factorA;
+                b = subtract ? -b * factorB : b * factorB;
+                long sum = a + b;
+                if (((a ^ sum) & (b ^ sum)) >= 0) {
+                    return format(sum, scale);
+                }
+            }
+        }
+        BigDecimal a = new BigDecimal(num1Str);
+        BigDecimal b = new BigDecimal(num2Str);
+        return localize((subtract ? a.subtract(b) : a.add(b)).setScale(scale).toPlainString());
+    }
+
+    /**
+     * Checks that {@code s} is a plain decimal and returns its shape: scale in the low 32
+     * bits and the number of significant digits (leading zeros skipped) in the high 32
+     * bits, or NOT_PLAIN.
+     */
+    static long scan(String s) {
+        int n = s.length();
+        int i = 0;
+        if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        int significant = 0;
+        int scale = -1;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9') {
+                digits++;
+                if (significant > 0 || c != '0') {
+                    significant++;
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return NOT_PLAIN;
+            }
+        }
+        if (digits == 0) {
+            return NOT_PLAIN;
+        }
+        return (long) significant << 32 | Math.max(scale, 0);
+    }
+
+    private static int scale(long shape) {
+        return (int) shape;
+    }
+
+    private static int digits(long shape) {
+        return (int) (shape >>> 32);
+    }
+
+    /** Digits of a plain decimal with at most 18 significant digits, ignoring the point. */
+    private static long unscaled(String s) {
+        long value = 0;
+        boolean negative = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '-') {
+                negative = true;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /** {@code unscaled / 10^scale} with exactly {@code scale} decimals and at least one integer digit. */
+    static String format(long unscaled, int scale) {
+        // 19 digits + sign + separator + leading zeros for large scales
+        char[] out = new char[Math.max(21, scale + 3)];
+        int pos = out.length;
+        boolean negative = unscaled < 0;
+        // work on the negative value so Long.MIN_VALUE needs no special case
+        long value = negative ? unscaled : -unscaled;
+        for (int i = 0; i < scale; i++) {
+            out[--pos] = (char) (ZERO - value % 10);
+            value /= 10;
+        }
+        if (scale > 0) {
+            out[--pos] = SEPARATOR;
+        }
+        do {
+            out[--pos] = (char) (ZERO - value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            out[--pos] = MINUS;
+        }
+        return new String(out, pos, out.length - pos);
+    }
+
+    private static String localize(String plain) {
+        if (ZERO == '0' && MINUS == '-' && SEPARATOR == '.') {
+            return plain;
+        }
+        StringBuilder out = new StringBuilder(plain.length());
+        for (int i = 0; i < plain.length(); i++) {
+            char c = plain.charAt(i);
+            out.append(c == '-' ? MINUS : c == '.' ? SEPARATOR : (char) (c - '0' + ZERO));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package M3;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.SplittableRandom;
+
+/*
+Correctness and throughput: double + DecimalFormat vs FixedDecimal
+------------------------------------------------------------------
+- Usage: java M3.FixedDecimalBenchmark [size] [rounds]
+- Operands are random plain decimals with 0..6 decimals (plus a few long ones)
+- Every result of both paths is compared with an exact BigDecimal result
+- Throughput compares the original per-call pattern + DecimalFormat code, the same
+  math with a cached formatter, and the scaled-long path
+*/
+
+public class FixedDecimalBenchmark extends BaseClass {
+    // keeps results live so the JIT cannot drop the loops
+    static volatile int sink;
+
+    private interface Path {
+        String evaluate(String a, String op, String b);
+    }
+
+    // the evaluate() body before FixedDecimal
+    private static String original(String num1Str, String operator, String num2Str) {
+        double num1 = Double.parseDouble(num1Str);
+        double num2 = Double.parseDouble(num2Str);
+        double result = operator.equals("+") ? num1 + num2 : num1 - num2;
+        int maxPrecision = Math.max(getDecimalPlaces(num1Str), getDecimalPlaces(num2Str));
+        StringBuilder pattern = new StringBuilder("0");
+        if (maxPrecision > 0) {
+            pattern.append(".");
+            for (int i = 0; i < maxPrecision; i++) {
+                pattern.append("0");
+            }
+        }
+        return new DecimalFormat(pattern.toString()).format(result);
+    }
+
+    private static String cachedFormat(String num1Str, String operator, String num2Str) {
+        double num1 = Double.parseDouble(num1Str);
+        double num2 = Double.parseDouble(num2Str);
+        double result = operator.equals("+") ? num1 + num2 : num1 - num2;
+        int maxPrecision = Math.max(getDecimalPlaces(num1Str), getDecimalPlaces(num2Str));
+        return CommandLineCalculator.format(maxPrecision).format(result);
+    }
+
+    private static int getDecimalPlaces(String numStr) {
+        return CommandLineCalculator.getDecimalPlaces(numStr);
+    }
+
+    private static String operand(SplittableRandom random) {
+        int decimals = random.nextInt(7);
+        StringBuilder number = new StringBuilder();
+        if (random.nextBoolean()) {
+            number.append('-');
+        }
+        // one in 50 operands is a long decimal that a double cannot hold
+        int integerDigits = random.nextInt(50) == 0 ? 17 : 1 + random.nextInt(6);
+        number.append(1 + random.nextInt(9));
+        for (int i = 1; i < integerDigits; i++) {
+            number.append(random.nextInt(10));
+        }
+        if (decimals > 0) {
+            number.append('.');
+            for (int i = 0; i < decimals; i++) {
+                number.append(random.nextInt(10));
+            }
+        }
+        return number.toString();
+    }
+
+    private static void correctness(String name, Path path, String[] a, String[] op, String[] b) {
+        int wrong = 0;
+        String example = "";
+        for (int i = 0; i < a.length; i++) {
+            BigDecimal x = new BigDecimal(a[i]);
+            BigDecimal y = new BigDecimal(b[i]);
+            String exact = (op[i].equals("+") ? x.add(y) : x.subtract(y)).toPlainString();
+            String actual = path.evaluate(a[i], op[i], b[i]);
+            if (!actual.equals(exact)) {
+                if (wrong++ == 0) {
+                    example = String.format(" e.g. %s %s %s = %s, got %s", a[i], op[i], b[i], exact, actual);
+                }
+            }
+        }
+        System.out.println(String.format("%-16s %,d of %,d results differ from the exact value%s", name, wrong,
+                a.length, example));
+    }
+
+    private static long time(Path path, String[] a, String[] op, String[] b) {
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int i = 0; i < a.length; i++) {
+            hash += path.evaluate(a[i], op[i], b[i]).length();
+        }
+        sink = hash;
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SplittableRandom random = new SplittableRandom(11);
+        String[] a = new String[size];
+        String[] op = new String[size];
+        String[] b = new String[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = operand(random);
+            op[i] = random.nextBoolean() ? "+" : "-";
+            b[i] = operand(random);
+        }
+        String[] names = { "double+format", "cached format", "FixedDecimal" };
+        Path[] paths = { FixedDecimalBenchmark::original, FixedDecimalBenchmark::cachedFormat,
+                FixedDecimal::evaluate };
+
+        System.out.println(colorize("Correctness", Color.PURPLE));
+        correctness(names[0], paths[0], a, op, b);
+        correctness(names[2], paths[2], a, op, b);
+
+        System.out.println(colorize("Throughput (" + size + " expressions)", Color.PURPLE));
+        for (int r = 0; r < rounds; r++) {
+            StringBuilder line = new StringBuilder("round " + (r + 1) + ":");
+            for (int p = 0; p < paths.length; p++) {
+                long nanos = time(paths[p], a, op, b);
+                line.append(String.format("  %s %.1f ms (%.0f ns/op)", names[p], nanos / 1e6, (double) nanos / size));
+            }
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package M3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Reader for CommandJournal directories
+-------------------------------------
+- Usage: java M3.JournalReader dump <dir>             print every record
+         java M3.JournalReader tail <dir>             print records as they are appended
+         java M3.JournalReader replay <dir> [--verify] run every command again
+- Segments are read oldest first through read-only mappings; a record is only
+  read once its length slot has been published (acquire load), so tailing a
+  journal that is being written never shows partial records
+- tail polls with a short back-off while the writer is idle and follows it into
+  the next segment; it has to keep up with the ring, or the oldest segments are
+  recycled underneath it
+- replay feeds the commands back into SlashCommandHandler's commands and prints the
+  responses; --verify compares them with the journaled ones (except /roll, which
+  is random) and reports the differences; replayed commands are never journaled,
+  even with -Dslash.journal set, so the audit trail stays unchanged
+*/
+
+public class JournalReader {
+    /** Receives records in journal order. */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void record(long epochMicros, String command, String response) throws IOException;
+    }
+
+    /**
+     * Reads every record of {@code directory}; with {@code follow}, keeps waiting for new
+     * records until interrupted.
+     *
+     * @return number of records read
+     */
+    public static long read(Path directory, boolean follow, RecordHandler handler)
+            throws IOException, InterruptedException {
+        List<Path> files = CommandJournal.segments(directory);
+        while (files.isEmpty() && follow) {
+            Thread.sleep(100);
+            files = CommandJournal.segments(directory);
+        }
+        if (files.isEmpty()) {
+            return 0;
+        }
+        long index = CommandJournal.segmentIndex(files.get(0));
+        long records = 0;
+        while (true) {
+            Path file = directory.resolve(CommandJournal.segmentName(index));
+            if (!Files.exists(file)) {
+                if (!follow) {
+                    return records;
+                }
+                Thread.sleep(10);
+                continue;
+            }
+            MappedByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (segment.capacity() < CommandJournal.HEADER
+                    || (int) CommandJournal.INT.getAcquire(segment, 0) != CommandJournal.MAGIC
+                    || segment.getLong(8) != index) {
+                // the writer has not initialized it yet
+                if (!follow) {
+                    return records;
+                }
+                Thread.sleep(10);
+                continue;
+            }
+            int position = CommandJournal.HEADER;
+            long idle = 1;
+            boolean endOfSegment = false;
+            while (!endOfSegment && position + 4 <= segment.capacity()) {
+                int length = (int) CommandJournal.INT.getAcquire(segment, position);
+                if (length == CommandJournal.END_OF_SEGMENT) {
+                    endOfSegment = true;
+                } else if (length == 0) {
+                    // nothing published yet: either the writer is idle or it stopped mid-segment
+                    if (!follow) {
+                        if (!Files.exists(directory.resolve(CommandJournal.segmentName(index + 1)))) {
+                            return records;
+                        }
+                        endOfSegment = true;
+                    } else {
+                        Thread.sleep(idle);
+                        idle = Math.min(idle * 2, 50);
+                    }
+                } else {
+                    idle = 1;
+                    int commandBytes = segment.getInt(position + 4);
+                    long micros = segment.getLong(position + 8);
+                    int start = position + CommandJournal.RECORD_HEADER;
+                    byte[] bytes = new byte[length - (CommandJournal.RECORD_HEADER - 4)];
+                    segment.get(start, bytes);
+                    String command = new String(bytes, 0, commandBytes, StandardCharsets.UTF_8);
+                    String response = new String(bytes, commandBytes, bytes.length - commandBytes,
+                            StandardCharsets.UTF_8);
+                    handler.record(micros, command, response);
+                    records++;
+                    position = (position + 4 + length + 7) & ~7;
+                }
+            }
+            index++;
+        }
+    }
+
+    private static String timestamp(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000)
+                .toString();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java M3.JournalReader dump|tail|replay <dir> [--verify]");
+            return;
+        }
+        Path directory = Paths.get(args[1]);
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        switch (args[0]) {
+            case "dump":
+            case "tail": {
+                boolean follow = args[0].equals("tail");
+                read(directory, follow, (micros, command, response) -> {
+                    out.write(timestamp(micros));
+                    out.write("  ");
+                    out.write(command);
+                    out.write("  ->  ");
+                    out.write(response);
+                    out.newLine();
+                    if (follow) {
+                        out.flush();
+                    }
+                });
+                break;
+            }
+            case "replay": {
+                boolean verify = args.length > 2 && args[2].equals("--verify");
+                long[] differences = new long[1];
+                long records = read(directory, false, (micros, command, response) -> {
+                    // dispatched without journaling: replaying must not append to the ring it reads
+                    String replayed = SlashCommandHandler.COMMANDS.dispatch(command, ThreadLocalRandom.current());
+                    out.write(replayed);
+                    out.newLine();
+                    if (verify && !replayed.equals(response) && !replayed.startsWith("Rolled ")) {
+                        differences[0]++;
+                        System.err.println("different response for " + command + ": " + response + " -> "
+                                + replayed);
+                    }
+                });
+                if (verify) {
+                    System.err.println(String.format("Replayed %,d commands, %,d different responses", records,
+                            differences[0]));
+                }
+                break;
+            }
+            default:
+                System.out.println("Unknown mode " + args[0] + "; use dump, tail or replay");
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,94 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/*
+Cuts a byte stream into blocks of whole lines
+---------------------------------------------
+- Reads the channel into a fixed buffer and cuts each fill at its last newline;
+  the partial line after it is carried over to the front of the next block
+- Every block handed out ends with '\n'; a last line without one gets it added
+- A line longer than the buffer keeps growing the carry until its newline shows up
+- Filling stops at the first read that delivers a newline: a file read fills the
+  whole buffer at once, while piped or interactive input is handed out line by
+  line as it arrives instead of waiting for a full buffer or the end of input
+- Used by CalculatorStream and CommandReplay, which hand whole blocks to workers
+  instead of building a String per line on the reading thread
+*/
+
+final class LineBlockReader {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ReadableByteChannel in;
+    private final ByteBuffer buffer;
+    private byte[] carry = EMPTY;
+    private boolean eof;
+    private boolean ended;
+
+    LineBlockReader(ReadableByteChannel in, int blockSize) {
+        this.in = in;
+        this.buffer = ByteBuffer.allocate(blockSize);
+    }
+
+    /** The next block of complete, newline-terminated lines; null at the end of the input. */
+    byte[] next() throws IOException {
+        while (!ended) {
+            buffer.clear();
+            int end = fill();
+            if (end >= 0) {
+                byte[] block = concat(carry, buffer.array(), 0, end + 1);
+                carry = Arrays.copyOfRange(buffer.array(), end + 1, buffer.position());
+                return block;
+            }
+            carry = concat(carry, buffer.array(), 0, buffer.position());
+            if (eof) {
+                ended = true;
+                if (carry.length == 0) {
+                    return null;
+                }
+                // last line without a trailing newline
+                byte[] block = Arrays.copyOf(carry, carry.length + 1);
+                block[carry.length] = '\n';
+                carry = EMPTY;
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads until the buffer is full, the input ends or a read delivers a newline.
+     *
+     * @return index of the last newline in the buffer, or -1
+     */
+    private int fill() throws IOException {
+        int newline = -1;
+        while (newline < 0 && !eof && buffer.hasRemaining()) {
+            int from = buffer.position();
+            if (in.read(buffer) < 0) {
+                eof = true;
+            } else {
+                newline = lastNewline(buffer.array(), from, buffer.position());
+            }
+        }
+        return newline;
+    }
+
+    private static int lastNewline(byte[] bytes, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] concat(byte[] head, byte[] tail, int from, int to) {
+        byte[] joined = Arrays.copyOf(head, head.length + to - from);
+        System.arraycopy(tail, from, joined, head.length, to - from);
+        return joined;
+    }
+}
@@ -0,0 +1,231 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Bulk Mad Libs rendering
+-----------------------
+- Usage: java M3.MadLibsBulk <count> <out|-> [threads] [words dir] [seed]
+  (also: java M3.MadLibsGenerator --bulk <count> <out|-> [threads] [words dir] [seed])
+- Renders <count> random stories from the story catalog without prompting; every
+  placeholder is filled with a random word from <words dir>/<placeholder>.txt
+  (one word per line, default M3/words), e.g. verb_past_tense.txt
+- Every story is followed by a blank line, like MadLibsGenerator prints it
+- Stories, literals and words are compiled and UTF-8 encoded once up front;
+  rendering a story is only random picks and byte copies
+- Each worker has its own SplittableRandom (split from one seeded root) and a
+  reusable 1MB output buffer; workers claim 1024 stories at a time and write full
+  buffers straight to the output channel, so output blocks are in completion
+  order, not story order
+- Reports stories/s and bytes/s (on stderr when writing to stdout)
+*/
+
+public class MadLibsBulk {
+    static final int BUFFER_SIZE = 1 << 20;
+    static final int BATCH = 1024;
+    private static final String STORIES_FOLDER = "M3/stories";
+    private static final String WORDS_FOLDER = "M3/words";
+
+    /** A story encoded for rendering: literals[0] word[0] literals[1] ... literals[n]. */
+    private static final class Story {
+        final byte[][] literals;
+        final byte[][][] words;
+        final int maxBytes;
+
+        Story(StoryTemplate template, Map<String, byte[][]> lists) {
+            int n = template.placeholderCount();
+            literals = new byte[n + 1][];
+            words = new byte[n][][];
+            int max = 1; // the blank line after the story
+            for (int i = 0; i <= n; i++) {
+                literals[i] = template.literal(i).getBytes(StandardCharsets.UTF_8);
+                max += literals[i].length;
+            }
+            List<String> names = template.placeholders();
+            for (int i = 0; i < n; i++) {
+                words[i] = lists.get(names.get(i));
+                int longest = 0;
+                for (byte[] word : words[i]) {
+                    longest = Math.max(longest, word.length);
+                }
+                max += longest;
+            }
+            maxBytes = max;
+        }
+    }
+
+    /** Reads {@code <dir>/<name>.txt} for every placeholder; blank lines are skipped. */
+    static Map<String, byte[][]> wordLists(Path dir, Collection<String> placeholders) throws IOException {
+        Map<String, byte[][]> lists = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String placeholder : placeholders) {
+            Path file = dir.resolve(placeholder + ".txt");
+            List<byte[]> words = new ArrayList<>();
+            if (Files.isRegularFile(file)) {
+                for (String word : Files.readAllLines(file, Charset.defaultCharset())) {
+                    if (!word.isBlank()) {
+                        words.add(word.strip().getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            if (words.isEmpty()) {
+                missing.add(file.toString());
+            }
+            lists.put(placeholder, words.toArray(new byte[0][]));
+        }
+        if (!missing.isEmpty()) {
+            throw new IOException("no words for placeholders: " + String.join(", ", missing));
+        }
+        return lists;
+    }
+
+    /**
+     * Renders {@code count} stories from {@code catalog} into {@code out}.
+     *
+     * @return bytes written
+     */
+    public static long render(StoryCatalog catalog, Path wordsDir, long count, WritableByteChannel out, int threads,
+            long seed) throws IOException, InterruptedException {
+        TreeSet<String> names = new TreeSet<>();
+        List<StoryTemplate> templates = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            StoryTemplate template = catalog.template(i);
+            templates.add(template);
+            names.addAll(template.placeholders());
+        }
+        if (templates.isEmpty()) {
+            throw new IOException("no stories to render");
+        }
+        Map<String, byte[][]> lists = wordLists(wordsDir, names);
+        Story[] stories = new Story[templates.size()];
+        for (int i = 0; i < stories.length; i++) {
+            stories[i] = new Story(templates.get(i), lists);
+            if (stories[i].maxBytes > BUFFER_SIZE) {
+                throw new IOException("story " + catalog.name(i) + " does not fit the output buffer");
+            }
+        }
+
+        AtomicLong claimed = new AtomicLong();
+        SplittableRandom root = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = root.split();
+            workers.add(pool.submit(() -> work(stories, count, claimed, random, out)));
+        }
+        long bytes = 0;
+        try {
+            for (Future<Long> worker : workers) {
+                bytes += worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("rendering failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return bytes;
+    }
+
+    private static long work(Story[] stories, long count, AtomicLong claimed, SplittableRandom random,
+            WritableByteChannel out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        int length = 0;
+        long written = 0;
+        while (true) {
+            long from = claimed.getAndAdd(BATCH);
+            if (from >= count) {
+                break;
+            }
+            long to = Math.min(count, from + BATCH);
+            for (long n = from; n < to; n++) {
+                Story story = stories[random.nextInt(stories.length)];
+                if (length + story.maxBytes > buffer.length) {
+                    written += flush(wrapped, length, out);
+                    length = 0;
+                }
+                byte[][] literals = story.literals;
+                byte[][][] words = story.words;
+                for (int i = 0; i < words.length; i++) {
+                    byte[] literal = literals[i];
+                    System.arraycopy(literal, 0, buffer, length, literal.length);
+                    length += literal.length;
+                    byte[][] list = words[i];
+                    byte[] word = list[random.nextInt(list.length)];
+                    System.arraycopy(word, 0, buffer, length, word.length);
+                    length += word.length;
+                }
+                byte[] tail = literals[words.length];
+                System.arraycopy(tail, 0, buffer, length, tail.length);
+                length += tail.length;
+                buffer[length++] = '\n';
+            }
+        }
+        return written + flush(wrapped, length, out);
+    }
+
+    private static int flush(ByteBuffer buffer, int length, WritableByteChannel out) throws IOException {
+        buffer.clear().limit(length);
+        // one block per call: channel writes are atomic with respect to each other
+        synchronized (out) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+        return length;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java M3.MadLibsBulk <count> <out|-> [threads] [words dir] [seed]");
+            return;
+        }
+        long count = Long.parseLong(args[0]);
+        String outName = args[1];
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Path wordsDir = Paths.get(args.length > 3 ? args[3] : WORDS_FOLDER);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        // System.out so the mode also works under ToolDaemon; flushed, never closed
+        WritableByteChannel out = outName.equals("-") ? Channels.newChannel(System.out)
+                : FileChannel.open(Paths.get(outName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        long start = System.nanoTime();
+        long bytes;
+        try (StoryCatalog catalog = StoryCatalog.open(Paths.get(STORIES_FOLDER))) {
+            bytes = render(catalog, wordsDir, count, out, threads, seed);
+        } finally {
+            if (outName.equals("-")) {
+                System.out.flush();
+            } else {
+                out.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        String report = String.format("Rendered %,d stories (%,d bytes) with %d threads in %.2f s: "
+                + "%,.0f stories/s, %.1f MB/s", count, bytes, threads, seconds, count / seconds,
+                bytes / seconds / (1 << 20));
+        (outName.equals("-") ? System.err : System.out).println(report);
+    }
+}
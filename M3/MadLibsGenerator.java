@@ -1,13 +1,12 @@
 package M3;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Scanner;
-import java.io.FileReader;
+import java.util.function.Function;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 
 
 
@@ -32,52 +31,40 @@ public class MadLibsGenerator extends BaseClass {
     private static final String STORIES_FOLDER = "M3/stories";
     private static String ucid = "rk975"; // <-- change to your ucid
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--bulk")) {
+            MadLibsBulk.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            MadLibsServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         printHeader(ucid, 3,
                 "Objective: Implement a Mad Libs generator that replaces placeholders dynamically.");
+        String finalStory;
 
         Scanner scanner = new Scanner(System.in);
-        File folder = new File(STORIES_FOLDER);
-
-        if (!folder.exists() || !folder.isDirectory() || folder.listFiles().length == 0) {
+        // Start edits
+        // the catalog index replaces listing the folder; it is rebuilt when the folder changes
+        try (StoryCatalog catalog = StoryCatalog.open(Paths.get(STORIES_FOLDER))) {
+            if (catalog.size() == 0) {
+                System.out.println("Error: No stories found in the 'stories' folder.");
+                printFooter(ucid, 3);
+                scanner.close();
+                return;
+            }
+            // parsed once per story; the template already knows every prompt
+            finalStory = catalog.template(catalog.random(new Random())).render(displayPrompt -> {
+                System.out.print("Enter a(n) " + displayPrompt + ": ");
+                return scanner.nextLine();
+            });
+        } catch (NoSuchFileException e){
             System.out.println("Error: No stories found in the 'stories' folder.");
             printFooter(ucid, 3);
             scanner.close();
             return;
-        }
-        List<String> lines = new ArrayList<>();
-        // Start edits
-        File[] storyFiles = folder.listFiles();
-        File selectedFile = storyFiles[new Random().nextInt(storyFiles.length)];
-        try {
-            Scanner fileScanner = new Scanner(selectedFile);
-
-            while (fileScanner.hasNextLine()) { 
-                lines.add(fileScanner.nextLine());
-            }
-
-            fileScanner.close();
-
-            for (int i = 0; i < lines.size(); i++){
-                String line = lines.get(i);
-                while (line.contains("<") && line.contains(">")){
-                    int start = line.indexOf("<");
-                    int end = line.indexOf(">", start);
-                    if (start >= 0 && end > start){
-                        String placeholder = line.substring(start + 1, end);
-                        String displayPrompt = placeholder.replace("_", " ");
-                        System.out.print("Enter a(n) " + displayPrompt + ": ");
-                        String userInput = scanner.nextLine(); 
-                        line = line.substring(0, start) + userInput + line.substring(end + 1);
-                    } else {
-                        break;
-                    }
-
-                }
-                lines.set(i, line);
-            }
-
-        } catch (FileNotFoundException e){
+        } catch (IOException e){
             System.out.println("Error,could not read the stories file");
             printFooter(ucid, 3);
             scanner.close();
@@ -86,13 +73,17 @@ public class MadLibsGenerator extends BaseClass {
 
         
         System.out.println("\nYour Completed Mad Libs Story:\n");
-        StringBuilder finalStory = new StringBuilder();
-        for (String line : lines) {
-            finalStory.append(line).append("\n");
-        }
-        System.out.println(finalStory.toString());
+        System.out.println(finalStory);
 
         printFooter(ucid, 3);
         scanner.close();
     }
+
+    /**
+     * Replaces every {@code <placeholder>} in {@code line}, left to right, with the
+     * answer for its prompt (the placeholder with underscores shown as spaces).
+     */
+    public static String fillPlaceholders(String line, Function<String, String> answer) {
+        return StoryTemplate.compileLine(line).render(answer);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package M3;
+
+import Common.ThreadPools;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+Load generator for MadLibsServer
+--------------------------------
+- Usage: java M3.MadLibsLoadClient [host] [port] [concurrency,...] [seconds]
+  e.g.   java M3.MadLibsLoadClient localhost 3200 64,1024 10
+- Fetches the story list and every story's placeholders first, then for each
+  concurrency level runs that many clients for [seconds], each sending one request
+  at a time: 10% list, 20% describe, 35% render with a JSON body, 35% render with
+  a form body
+- Uses one java.net.http.HttpClient (HTTP/1.1, keep-alive) with a thread per
+  client from ThreadPools.perTask()
+- Reports sustained requests/s, p50 / p99 / p99.9 / max latency and the number of
+  failed requests (non-200 or I/O error)
+*/
+
+public class MadLibsLoadClient extends BaseClass {
+    private static final Pattern NAME = Pattern.compile("\"name\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern PLACEHOLDERS = Pattern.compile("\"placeholders\":\\[([^\\]]*)\\]");
+
+    private static HttpRequest get(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private static HttpRequest post(URI uri, String contentType, String body) {
+        return HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /** The request mix: list, describe and render requests for every story. */
+    private static List<HttpRequest[]> requests(HttpClient client, String base) throws Exception {
+        String list = client.send(get(URI.create(base)), HttpResponse.BodyHandlers.ofString()).body();
+        List<HttpRequest[]> stories = new ArrayList<>();
+        Matcher names = NAME.matcher(list);
+        while (names.find()) {
+            String name = names.group(1);
+            URI story = URI.create(base + "/" + encode(name));
+            String description = client.send(get(story), HttpResponse.BodyHandlers.ofString()).body();
+            Matcher placeholders = PLACEHOLDERS.matcher(description);
+            Set<String> keys = new LinkedHashSet<>();
+            if (placeholders.find() && !placeholders.group(1).isEmpty()) {
+                for (String quoted : placeholders.group(1).split(",")) {
+                    keys.add(quoted.substring(1, quoted.length() - 1));
+                }
+            }
+            StringBuilder json = new StringBuilder("{");
+            StringBuilder form = new StringBuilder();
+            for (String key : keys) {
+                json.append(json.length() > 1 ? "," : "").append('"').append(key).append("\":\"").append(key)
+                        .append(" word\"");
+                form.append(form.length() > 0 ? "&" : "").append(encode(key)).append('=').append(encode(key))
+                        .append("+word");
+            }
+            json.append('}');
+            URI render = URI.create(base + "/" + encode(name) + "/render");
+            stories.add(new HttpRequest[] { get(URI.create(base)), get(story),
+                    post(render, "application/json", json.toString()),
+                    post(render, "application/x-www-form-urlencoded", form.toString()) });
+        }
+        return stories;
+    }
+
+    private static HttpRequest pick(List<HttpRequest[]> stories, SplittableRandom random) {
+        HttpRequest[] story = stories.get(random.nextInt(stories.size()));
+        int roll = random.nextInt(100);
+        return roll < 10 ? story[0] : roll < 30 ? story[1] : roll < 65 ? story[2] : story[3];
+    }
+
+    private static long[] run(HttpClient client, List<HttpRequest[]> stories, int concurrency, long millis)
+            throws Exception {
+        ExecutorService pool = ThreadPools.perTask("madlibs-load");
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicLong failures = new AtomicLong();
+        List<Future<long[]>> results = new ArrayList<>(concurrency);
+        SplittableRandom root = new SplittableRandom(11);
+        long[] deadline = new long[1];
+        for (int c = 0; c < concurrency; c++) {
+            SplittableRandom random = root.split();
+            results.add(pool.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                go.await();
+                while (System.nanoTime() < deadline[0]) {
+                    HttpRequest request = pick(stories, random);
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request,
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                    long latency = System.nanoTime() - start;
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = latency;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        long start = System.nanoTime();
+        deadline[0] = start + millis * 1_000_000;
+        go.countDown();
+        List<long[]> all = new ArrayList<>();
+        int total = 0;
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            all.add(latencies);
+            total += latencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        long[] merged = new long[total];
+        int filled = 0;
+        for (long[] latencies : all) {
+            System.arraycopy(latencies, 0, merged, filled, latencies.length);
+            filled += latencies.length;
+        }
+        Arrays.sort(merged);
+        if (total == 0) {
+            return new long[] { elapsed, 0, 0, 0, 0, 0, failures.get() };
+        }
+        return new long[] { elapsed, total, merged[(int) Math.ceil(0.50 * total) - 1],
+                merged[(int) Math.ceil(0.99 * total) - 1], merged[(int) Math.ceil(0.999 * total) - 1],
+                merged[total - 1], failures.get() };
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : MadLibsServer.DEFAULT_PORT;
+        String[] levels = (args.length > 2 ? args[2] : "64,1024").split(",");
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        String base = "http://" + host + ":" + port + "/templates";
+
+        ExecutorService clientThreads = ThreadPools.perTask("madlibs-http-client");
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientThreads)
+                .connectTimeout(Duration.ofSeconds(30)).build();
+        List<HttpRequest[]> stories = requests(client, base);
+        if (stories.isEmpty()) {
+            System.out.println("The server has no stories");
+            return;
+        }
+        System.out.println(colorize(String.format("%s, %d stories, %ds per level, %s client threads", base,
+                stories.size(), seconds, ThreadPools.virtualThreads() ? "virtual" : "platform"), Color.PURPLE));
+        for (String level : levels) {
+            int concurrency = Integer.parseInt(level.trim());
+            long[] result = run(client, stories, concurrency, seconds * 1000L);
+            System.out.println(String.format("%,6d clients: %,d requests, %,.0f req/s, p50 %.2f ms, p99 %.2f ms, "
+                    + "p99.9 %.2f ms, max %.2f ms, %d failed", concurrency, result[1], result[1] / (result[0] / 1e9),
+                    result[2] / 1e6, result[3] / 1e6, result[4] / 1e6, result[5] / 1e6, result[6]));
+        }
+        clientThreads.shutdown();
+    }
+}
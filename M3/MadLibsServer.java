@@ -0,0 +1,430 @@
+package M3;
+
+import Common.ThreadPools;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
+
+/*
+HTTP rendering service for Mad Libs
+-----------------------------------
+- Usage: java M3.MadLibsServer [port] [stories dir] [bind-address]
+  (also: java M3.MadLibsGenerator --server [port] [stories dir])
+  listens on localhost:3200 by default
+- GET  /templates                     -> [{"name":"story1.txt","placeholders":8}, ...]
+- GET  /templates/<name>              -> {"name":..., "placeholders":[...], "prompts":[...]}
+- POST /templates/<name>/render       -> the filled story as text/plain
+                                         (or {"story":...} with Accept: application/json)
+  body: JSON {"adjective":"shiny","object":["sock","lamp"]} or a form
+  adjective=shiny&object=sock&object=lamp; a placeholder used several times takes
+  its values in order and repeats the last one, so one value fills them all
+- Missing values -> 400 with the missing placeholder names; unknown story -> 404
+- Stories come from a StoryCache, so they are parsed once, kept in memory and
+  reloaded when the folder changes
+- Sets TCP_NODELAY and a larger idle keep-alive pool on the JDK server unless
+  the sun.net.httpserver.* properties are given on the command line
+- Every exchange runs on its own thread from ThreadPools.perTask(): virtual
+  threads on JDK 21+, small-stack platform threads before that
+*/
+
+public class MadLibsServer extends BaseClass {
+    public static final int DEFAULT_PORT = 3200;
+    private static final int BACKLOG = 4096;
+    private static final String PREFIX = "/templates";
+
+    static {
+        // read once by the JDK server: without TCP_NODELAY a keep-alive client waits out the
+        // 40ms delayed ACK on every response, and past 200 idle connections the server closes
+        // kept-alive ones under clients that are about to reuse them
+        defaultProperty("sun.net.httpserver.nodelay", "true");
+        defaultProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(BACKLOG));
+    }
+
+    private final HttpServer server;
+    private final StoryCache stories;
+    private final ExecutorService exchanges = ThreadPools.perTask("madlibs-http");
+
+    public MadLibsServer(int port, InetAddress bindAddress, Path storiesFolder) throws IOException {
+        stories = new StoryCache(storiesFolder);
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), BACKLOG);
+        server.createContext(PREFIX, this::handle);
+        server.setExecutor(exchanges);
+    }
+
+    private static void defaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() throws IOException {
+        server.stop(0);
+        exchanges.shutdownNow();
+        stories.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            String method = exchange.getRequestMethod();
+            if (path.length() > PREFIX.length() && path.charAt(PREFIX.length()) != '/') {
+                send(exchange, 404, error("no such path " + path));
+                return;
+            }
+            String rest = path.length() > PREFIX.length() ? path.substring(PREFIX.length() + 1) : "";
+            if (rest.isEmpty()) {
+                if (!method.equals("GET")) {
+                    send(exchange, 405, error("use GET"));
+                    return;
+                }
+                send(exchange, 200, list());
+                return;
+            }
+            boolean render = rest.endsWith("/render");
+            String name = URLDecoder.decode(render ? rest.substring(0, rest.length() - "/render".length()) : rest,
+                    StandardCharsets.UTF_8);
+            StoryTemplate template = stories.snapshot().get(name);
+            if (template == null) {
+                send(exchange, 404, error("no story " + name));
+            } else if (!render) {
+                if (!method.equals("GET")) {
+                    send(exchange, 405, error("use GET"));
+                    return;
+                }
+                send(exchange, 200, describe(name, template));
+            } else if (!method.equals("POST")) {
+                send(exchange, 405, error("use POST"));
+            } else {
+                render(exchange, template);
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String list() {
+        StoryCache.Snapshot snapshot = stories.snapshot();
+        StringBuilder json = new StringBuilder(snapshot.size() * 48 + 2).append('[');
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":");
+            Json.quote(snapshot.name(i), json);
+            json.append(",\"placeholders\":").append(snapshot.template(i).placeholderCount()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String describe(String name, StoryTemplate template) {
+        StringBuilder json = new StringBuilder(256).append("{\"name\":");
+        Json.quote(name, json);
+        json.append(",\"placeholders\":");
+        Json.array(template.placeholders(), json);
+        json.append(",\"prompts\":");
+        Json.array(template.prompts(), json);
+        return json.append('}').toString();
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.quote(message, json);
+        return json.append('}').toString();
+    }
+
+    private void render(HttpExchange exchange, StoryTemplate template) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        Map<String, List<String>> values = (contentType != null && contentType.startsWith("application/json"))
+                || body.stripLeading().startsWith("{") ? Json.parseObject(body) : parseForm(body);
+
+        List<String> placeholders = template.placeholders();
+        String[] answers = new String[placeholders.size()];
+        Map<String, Integer> used = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (int i = 0; i < answers.length; i++) {
+            String placeholder = placeholders.get(i);
+            List<String> given = values.get(placeholder);
+            if (given == null || given.isEmpty()) {
+                missing.add(placeholder);
+                continue;
+            }
+            int k = used.merge(placeholder, 1, Integer::sum) - 1;
+            answers[i] = given.get(Math.min(k, given.size() - 1));
+            if (answers[i] == null) {
+                // a null inside a JSON array is no answer either
+                missing.add(placeholder);
+            }
+        }
+        if (!missing.isEmpty()) {
+            send(exchange, 400, error("missing values for " + String.join(", ", missing)));
+            return;
+        }
+        String story = template.render(answers);
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null && accept.contains("application/json")) {
+            StringBuilder json = new StringBuilder(story.length() + 16).append("{\"story\":");
+            Json.quote(story, json);
+            send(exchange, 200, json.append('}').toString());
+        } else {
+            send(exchange, 200, "text/plain; charset=utf-8", story);
+        }
+    }
+
+    static Map<String, List<String>> parseForm(String body) {
+        Map<String, List<String>> values = new HashMap<>();
+        for (String pair : body.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            values.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return values;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Just enough JSON for this service: flat objects of strings (or string arrays) in, escaped strings out. */
+    static final class Json {
+        private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+        private final String text;
+        private int at;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        /** Parses {"key": "value" | ["value", ...] | number | true | false | null, ...}. */
+        static Map<String, List<String>> parseObject(String text) {
+            Json json = new Json(text);
+            Map<String, List<String>> values = new HashMap<>();
+            json.expect('{');
+            if (!json.peek('}')) {
+                do {
+                    String key = json.string();
+                    json.expect(':');
+                    List<String> list = new ArrayList<>();
+                    if (json.peek('[')) {
+                        json.expect('[');
+                        if (!json.peek(']')) {
+                            do {
+                                list.add(json.scalar());
+                            } while (json.next(','));
+                        }
+                        json.expect(']');
+                    } else {
+                        String value = json.scalar();
+                        if (value != null) {
+                            list.add(value);
+                        }
+                    }
+                    values.put(key, list);
+                } while (json.next(','));
+            }
+            json.expect('}');
+            json.skipSpace();
+            if (json.at != text.length()) {
+                throw json.error("trailing characters");
+            }
+            return values;
+        }
+
+        private void skipSpace() {
+            while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+                at++;
+            }
+        }
+
+        private boolean peek(char c) {
+            skipSpace();
+            return at < text.length() && text.charAt(at) == c;
+        }
+
+        private boolean next(char c) {
+            if (peek(c)) {
+                at++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!next(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("bad JSON at " + at + ": " + message);
+        }
+
+        private String scalar() {
+            if (peek('"')) {
+                return string();
+            }
+            int start = at;
+            while (at < text.length() && ",]} \t\r\n".indexOf(text.charAt(at)) < 0) {
+                at++;
+            }
+            String literal = text.substring(start, at);
+            if (literal.isEmpty()) {
+                throw error("expected a value");
+            }
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (!literal.equals("true") && !literal.equals("false") && !NUMBER.matcher(literal).matches()) {
+                throw error("unquoted value " + literal);
+            }
+            return literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                if (at >= text.length()) {
+                    throw error("unterminated string");
+                }
+                char c = text.charAt(at++);
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                if (at >= text.length()) {
+                    throw error("unterminated string");
+                }
+                char escaped = text.charAt(at++);
+                switch (escaped) {
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'u':
+                        if (at + 4 > text.length()) {
+                            throw error("bad \\u escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad \\u escape");
+                        }
+                        at += 4;
+                        break;
+                    default:
+                        out.append(escaped);
+                }
+            }
+        }
+
+        static void quote(String value, StringBuilder out) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                }
+            }
+            out.append('"');
+        }
+
+        static void array(List<String> values, StringBuilder out) {
+            out.append('[');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                quote(values.get(i), out);
+            }
+            out.append(']');
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path folder = Paths.get(args.length > 1 ? args[1] : "M3/stories");
+        InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+        MadLibsServer server = new MadLibsServer(port, bindAddress, folder);
+        server.start();
+        System.out.println(colorize("Mad Libs service on http://" + bindAddress.getHostAddress() + ":" + server.port()
+                + PREFIX + " (" + (ThreadPools.virtualThreads() ? "virtual" : "platform") + " threads)",
+                Color.PURPLE));
+    }
+}
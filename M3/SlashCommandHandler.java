@@ -20,13 +20,25 @@ Challenge 2: Simple Slash Command Handler
 5. handle any errors usign a while a clause. 
 */
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.Random;
 
 public class SlashCommandHandler extends BaseClass {
     private static String ucid = "rk975"; // <-- change to your UCID
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            SlashCommandServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--replay")) {
+            CommandReplay.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         printHeader(ucid, 2, "Objective: Implement a simple slash command parser.");
 
         Scanner scanner = new Scanner(System.in);
@@ -36,44 +48,134 @@ public class SlashCommandHandler extends BaseClass {
         while (true) {
             System.out.print("Enter command: ");
             String input  = scanner.nextLine().trim();
+            System.out.println(respond(input, rand));
+            if (input.equalsIgnoreCase("/quit")) {
+                break;
+            }
+        }
+
+        printFooter(ucid, 2);
+        scanner.close();
+    }
+
+    private static final String UNRECOGNIZED = "Error: Unrecognized command.";    // Step 5: Unknown command
+    private static final String ROLL_FORMAT = "Error, invalid format. Use /roll <num>d<sides>.";
 
-            if(input.equalsIgnoreCase("/quit")){
-                System.out.println("Exiting the program");
-                break; 
-            } else if (input.toLowerCase().startsWith("/greet")){
-                String[] parts = input.split(" ", 2);
-                if (parts.length < 2 || parts[1].isEmpty()){
-                    System.out.println("Error, missing name for /greet.");
-                } else {
-                    System.out.println("Hello, " + parts[1] + "!");
+    // Step 3: each command is looked up by name instead of walking an if/else chain
+    static final CommandRegistry COMMANDS = new CommandRegistry(UNRECOGNIZED)
+            .register("/quit", (argument, rand) -> argument == null ? "Exiting the program" : UNRECOGNIZED)
+            .register("/greet", (argument, rand) -> {
+                if (argument == null || argument.isEmpty()) {
+                    return "Error, missing name for /greet.";
                 }
-            } else if (input.toLowerCase().startsWith("/roll ")){
-                String [] parts = input.split(" ", 2);
-                if (parts.length < 2 || !parts[1].matches("\\d+d\\d+")){
-                    System.out.println("Error, invalid format. Use /roll <num>d<sides>.");   
-                } else {
-                    String[] diceParts = parts[1].toLowerCase().split("d");
-                    int num = Integer.parseInt(diceParts[0]);
-                    int sides = Integer.parseInt(diceParts[1]);
-                    int total = 0; 
-                    for (int i = 0; i < num; i++) {
-                        total += rand.nextInt(sides) + 1; 
-                    }
-                    System.out.println("Rolled " + num + "d" + sides + " and got " + total + "!");
+                return "Hello, " + argument + "!";
+            })
+            .register("/roll", (argument, rand) -> {
+                long dice = argument == null ? -1 : parseDice(argument);
+                if (dice < 0) {
+                    return ROLL_FORMAT;
                 }
-                 } else if (input.toLowerCase().startsWith("/echo ")) {    // Step 3: Match /echo
-                    String[] parts = input.split(" ", 2);
-                    if (parts.length < 2 || parts[1].isEmpty()) {
-                        System.out.println("Error: Missing message for /echo."); // Step 5
-                }   else {
-                        System.out.println(parts[1]);
+                int num = (int) (dice >>> 32);
+                int sides = (int) dice;
+                return "Rolled " + num + "d" + sides + " and got " + DiceRoller.roll(num, sides, rand) + "!";
+            })
+            .register("/echo", (argument, rand) -> {
+                if (argument == null || argument.isEmpty()) {
+                    return "Error: Missing message for /echo."; // Step 5
                 }
-            }     else {
-                    System.out.println("Error: Unrecognized command.");    // Step 5: Unknown command
-             }
+                return argument;
+            });
+
+    // audit trail of every command, enabled with -Dslash.journal=<dir>
+    private static final CommandJournal JOURNAL = openJournal(System.getProperty("slash.journal"));
+
+    private static CommandJournal openJournal(String directory) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            CommandJournal journal = new CommandJournal(Paths.get(directory));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close the journal: " + e.getMessage());
+                }
+            }, "journal-close"));
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the journal in " + directory, e);
         }
+    }
 
-        printFooter(ucid, 2);
-        scanner.close();
+    /** Runs one (trimmed) command line and returns the line to print for it. */
+    public static String respond(String input, Random rand) {
+        String response = COMMANDS.dispatch(input, rand);
+        journal(input, response);
+        return response;
+    }
+
+    /** Whether commands are journaled (-Dslash.journal). */
+    static boolean journaling() {
+        return JOURNAL != null;
+    }
+
+    /**
+     * Adds one command and its response to the journal, if there is one. Callers that
+     * dispatch out of order (CommandReplay) use COMMANDS directly and call this in
+     * session order.
+     */
+    static void journal(String input, String response) {
+        if (JOURNAL != null) {
+            try {
+                JOURNAL.append(input, response);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not journal " + input, e);
+            }
+        }
+    }
+
+    /**
+     * Parses "<num>d<sides>" (ASCII digits, lower-case d) into num << 32 | sides, or -1
+     * if the text does not match or a number does not fit in an int.
+     */
+    static long parseDice(String text) {
+        int n = text.length();
+        int i = 0;
+        long num = 0;
+        while (i < n && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            num = num * 10 + (text.charAt(i++) - '0');
+            if (num > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        if (i == 0 || i == n || text.charAt(i) != 'd') {
+            return -1;
+        }
+        int sidesStart = ++i;
+        long sides = 0;
+        while (i < n && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            sides = sides * 10 + (text.charAt(i++) - '0');
+            if (sides > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        // a die needs at least one side unless nothing is rolled
+        if (i == sidesStart || i != n || (sides == 0 && num > 0)) {
+            return -1;
+        }
+        return num << 32 | sides;
+    }
+
+    /**
+     * Sum of {@code num} rolls of a die with {@code sides} sides, one die at a time.
+     * /roll uses DiceRoller, which gives the same distribution without the loop.
+     */
+    public static long roll(int num, int sides, Random rand) {
+        long total = 0; 
+        for (int i = 0; i < num; i++) {
+            total += rand.nextInt(sides) + 1; 
+        }
+        return total;
     }
 }
\ No newline at end of file
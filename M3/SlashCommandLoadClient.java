@@ -0,0 +1,111 @@
+package M3;
+
+import Common.ThreadPools;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+Load generator for SlashCommandServer
+-------------------------------------
+- Usage: java M3.SlashCommandLoadClient [host] [port] [connections,...] [commands-per-connection]
+  e.g.   java M3.SlashCommandLoadClient localhost 3100 1000,10000 50
+- For each connection count: opens every connection first, then all of them send
+  the same mixed greet / roll / echo / unknown stream one request at a time,
+  timing each request -> reply round trip, and finish with /quit
+- Reports p50 / p99 / max latency and commands per second over the command phase
+- Each side of a connection needs a file descriptor, so 10k connections need
+  ulimit -n above 10k for the client and the server process
+*/
+
+public class SlashCommandLoadClient extends BaseClass {
+    private static final String[] MIX = { "/greet Alice", "/roll 3d6", "/echo hello there", "/ROLL 1000d20",
+            "/unknown", "/Greet Bob", "/roll 2000000000d6", "/echo x" };
+
+    private static long[] run(String host, int port, int connections, int commands) throws Exception {
+        ExecutorService pool = ThreadPools.perTask("load-client");
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>(connections);
+        for (int c = 0; c < connections; c++) {
+            int offset = c;
+            results.add(pool.submit(() -> {
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(host, port), 30_000);
+                    socket.setTcpNoDelay(true);
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    BufferedWriter out = new BufferedWriter(
+                            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                    connected.countDown();
+                    go.await();
+                    long[] latencies = new long[commands];
+                    for (int i = 0; i < commands; i++) {
+                        long start = System.nanoTime();
+                        out.write(MIX[(offset + i) % MIX.length]);
+                        out.write('\n');
+                        out.flush();
+                        if (in.readLine() == null) {
+                            throw new IOException("server closed the connection");
+                        }
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    out.write("/quit\n");
+                    out.flush();
+                    in.readLine();
+                    return latencies;
+                } finally {
+                    // a failed connect must not leave the others waiting
+                    connected.countDown();
+                }
+            }));
+        }
+        if (!connected.await(2, TimeUnit.MINUTES)) {
+            throw new IOException("timed out opening " + connections + " connections");
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        long[] all = new long[connections * commands];
+        int filled = 0;
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            System.arraycopy(latencies, 0, all, filled, latencies.length);
+            filled += latencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        Arrays.sort(all);
+        return new long[] { elapsed, all[(int) Math.ceil(0.50 * all.length) - 1],
+                all[(int) Math.ceil(0.99 * all.length) - 1], all[all.length - 1] };
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : SlashCommandServer.DEFAULT_PORT;
+        String[] counts = (args.length > 2 ? args[2] : "1000,10000").split(",");
+        int commands = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        System.out.println(colorize(String.format("%s:%d, %d commands per connection, %s client threads", host, port,
+                commands, ThreadPools.virtualThreads() ? "virtual" : "platform"), Color.PURPLE));
+        for (String count : counts) {
+            int connections = Integer.parseInt(count.trim());
+            long[] result = run(host, port, connections, commands);
+            long total = (long) connections * commands;
+            System.out.println(String.format("%,7d connections: %,d commands in %.1f ms, %,.0f cmds/s, "
+                    + "p50 %.1f us, p99 %.1f us, max %.1f us", connections, total, result[0] / 1e6,
+                    total / (result[0] / 1e9), result[1] / 1e3, result[2] / 1e3, result[3] / 1e3));
+        }
+    }
+}
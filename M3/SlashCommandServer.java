@@ -0,0 +1,110 @@
+package M3;
+
+import Common.ThreadPools;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+TCP server for the slash commands
+---------------------------------
+- Usage: java M3.SlashCommandServer [port] [bind-address]
+  (also: java M3.SlashCommandHandler --server [port])
+- Line protocol: every line a client sends is one command; the server answers
+  with exactly one line, the same text the console version prints
+- "/quit" answers "Exiting the program" and closes that connection
+- One thread per connection from ThreadPools.perTask(): virtual threads on JDK
+  21+, small-stack platform threads before that
+- Replies are flushed only when the client has nothing more buffered, so
+  pipelined commands share a write
+- Every command, /roll included, gets ThreadLocalRandom.current() as its
+  generator, so no generator is shared between connections
+*/
+
+public class SlashCommandServer extends BaseClass {
+    public static final int DEFAULT_PORT = 3100;
+    private static final int BACKLOG = 4096;
+
+    private final ServerSocket server;
+    private final ExecutorService connections = ThreadPools.perTask("slash-connection");
+    private final AtomicInteger open = new AtomicInteger();
+
+    public SlashCommandServer(int port, InetAddress bindAddress) throws IOException {
+        server = new ServerSocket(port, BACKLOG, bindAddress);
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /** Accepts connections until the server socket is closed. */
+    public void serve() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                connections.execute(() -> handle(socket));
+            }
+        } catch (IOException e) {
+            if (!server.isClosed()) {
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void handle(Socket socket) {
+        open.incrementAndGet();
+        try (Socket client = socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                BufferedWriter out = new BufferedWriter(
+                        new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            client.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String input = line.trim();
+                out.write(SlashCommandHandler.respond(input, ThreadLocalRandom.current()));
+                out.write('\n');
+                if (input.equalsIgnoreCase("/quit")) {
+                    break;
+                }
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // client went away; nothing to answer
+        } finally {
+            open.decrementAndGet();
+        }
+    }
+
+    /** Connections currently being served. */
+    public int openConnections() {
+        return open.get();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress bind = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        SlashCommandServer server = new SlashCommandServer(port, bind);
+        System.out.println(colorize(String.format("Slash command server on %s:%d (%s threads)",
+                bind.getHostAddress(), server.port(), ThreadPools.virtualThreads() ? "virtual" : "platform"),
+                Color.PURPLE));
+        server.serve();
+    }
+}
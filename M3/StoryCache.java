@@ -0,0 +1,296 @@
+package M3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+Hot-reloading story cache
+-------------------------
+- Usage: java M3.StoryCache [stories dir]   (watch and print every reload)
+- Loads and compiles every story of a folder once, then watches the folder with a
+  WatchService (inotify on Linux) on a daemon thread
+- Events are collected until the folder has been quiet for 5ms, or for at most
+  50ms under steady churn, then only the files that were created, modified or
+  deleted are re-read and re-parsed; events still pending start the next burst;
+  an OVERFLOW event (too many changes to track) falls back to a full rescan
+- Every reload builds a new immutable Snapshot (sorted name and template arrays,
+  never changed after publication) by merging the changes into the previous one,
+  and publishes it with one volatile write; readers just read the current
+  snapshot, never lock and never see a half-applied reload
+- Lookups by name are binary searches; a random pick is one array read
+- A file that cannot be read right now (e.g. mid-write) keeps its previous
+  version until the next event for it
+- snapshot().version and the reload listener make reload latency measurable
+  (see StoryCacheBenchmark)
+*/
+
+public final class StoryCache implements Closeable {
+    static final long QUIET_MILLIS = 5;
+    // a burst longer than this is published anyway, so steady churn cannot hold off every reload
+    static final long MAX_BURST_MILLIS = Math.max(QUIET_MILLIS * 10, 50);
+
+    /** One consistent view of the folder: story names, sorted, and their templates. */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, new String[0], new StoryTemplate[0]);
+
+        public final long version;
+        private final String[] names;
+        private final StoryTemplate[] templates;
+
+        Snapshot(long version, String[] names, StoryTemplate[] templates) {
+            this.version = version;
+            this.names = names;
+            this.templates = templates;
+        }
+
+        static Snapshot of(long version, SortedMap<String, StoryTemplate> stories) {
+            return new Snapshot(version, stories.keySet().toArray(new String[0]),
+                    stories.values().toArray(new StoryTemplate[0]));
+        }
+
+        /**
+         * This snapshot with {@code changes} applied (null value = removed), merged in one
+         * pass over the sorted arrays.
+         */
+        Snapshot apply(long newVersion, SortedMap<String, StoryTemplate> changes) {
+            String[] mergedNames = new String[names.length + changes.size()];
+            StoryTemplate[] mergedTemplates = new StoryTemplate[mergedNames.length];
+            int i = 0;
+            int n = 0;
+            for (Map.Entry<String, StoryTemplate> change : changes.entrySet()) {
+                int at = Arrays.binarySearch(names, i, names.length, change.getKey());
+                int end = at >= 0 ? at : -at - 1;
+                System.arraycopy(names, i, mergedNames, n, end - i);
+                System.arraycopy(templates, i, mergedTemplates, n, end - i);
+                n += end - i;
+                i = at >= 0 ? at + 1 : end;
+                if (change.getValue() != null) {
+                    mergedNames[n] = change.getKey();
+                    mergedTemplates[n++] = change.getValue();
+                }
+            }
+            System.arraycopy(names, i, mergedNames, n, names.length - i);
+            System.arraycopy(templates, i, mergedTemplates, n, names.length - i);
+            n += names.length - i;
+            return new Snapshot(newVersion, Arrays.copyOf(mergedNames, n), Arrays.copyOf(mergedTemplates, n));
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        /** Story file names, sorted. */
+        public String name(int i) {
+            return names[i];
+        }
+
+        public StoryTemplate template(int i) {
+            return templates[i];
+        }
+
+        /** The story called {@code name}, or null. */
+        public StoryTemplate get(String name) {
+            int at = Arrays.binarySearch(names, name);
+            return at >= 0 ? templates[at] : null;
+        }
+
+        /** A random story, or null if the folder is empty. */
+        public StoryTemplate random(Random rand) {
+            return templates.length == 0 ? null : templates[rand.nextInt(templates.length)];
+        }
+    }
+
+    /** What a reload did, for listeners. */
+    public static final class Reload {
+        public final Snapshot snapshot;
+        public final int parsed;
+        public final int removed;
+        public final long nanos;
+
+        Reload(Snapshot snapshot, int parsed, int removed, long nanos) {
+            this.snapshot = snapshot;
+            this.parsed = parsed;
+            this.removed = removed;
+            this.nanos = nanos;
+        }
+    }
+
+    private final Path folder;
+    private final WatchService watcher;
+    private final Thread thread;
+    private final Consumer<Reload> listener;
+    private volatile Snapshot current;
+
+    public StoryCache(Path folder) throws IOException {
+        this(folder, reload -> {
+        });
+    }
+
+    /** Loads {@code folder} and starts watching it; {@code listener} runs after every reload. */
+    public StoryCache(Path folder, Consumer<Reload> listener) throws IOException {
+        this.folder = folder;
+        this.listener = listener;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        try {
+            // register before the first scan so nothing changed in between is missed
+            folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            this.current = Snapshot.of(0, scan(Snapshot.EMPTY));
+        } catch (IOException | RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        this.thread = new Thread(this::watch, "story-cache-" + folder.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** The current snapshot; keep using the same one for a consistent view. */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    private SortedMap<String, StoryTemplate> scan(Snapshot previous) throws IOException {
+        SortedMap<String, StoryTemplate> stories = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                StoryTemplate template = load(file, previous.get(name));
+                if (template != null) {
+                    stories.put(name, template);
+                }
+            }
+        }
+        return stories;
+    }
+
+    /** Parses {@code file}; null if it is gone or not a file, {@code previous} if it cannot be read now. */
+    private static StoryTemplate load(Path file, StoryTemplate previous) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return StoryTemplate.load(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            return previous;
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Set<String> changed = new HashSet<>();
+                boolean overflow = false;
+                // collect the burst: keep polling until the folder is quiet or the burst is too long
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BURST_MILLIS);
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            changed.add(((Path) event.context()).toString());
+                        }
+                    }
+                    if (!key.reset()) {
+                        // the folder itself is gone
+                        publish(new Snapshot(current.version + 1, Snapshot.EMPTY.names, Snapshot.EMPTY.templates), 0,
+                                current.size(), System.nanoTime());
+                        return;
+                    }
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        break;
+                    }
+                    key = watcher.poll(Math.min(TimeUnit.MILLISECONDS.toNanos(QUIET_MILLIS), left),
+                            TimeUnit.NANOSECONDS);
+                }
+                reload(changed, overflow);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void reload(Set<String> changed, boolean overflow) {
+        long start = System.nanoTime();
+        Snapshot previous = current;
+        if (overflow) {
+            try {
+                SortedMap<String, StoryTemplate> stories = scan(previous);
+                publish(Snapshot.of(previous.version + 1, stories), stories.size(),
+                        Math.max(0, previous.size() - stories.size()), start);
+            } catch (IOException e) {
+                // folder unreadable right now; keep the current snapshot
+            }
+            return;
+        }
+        SortedMap<String, StoryTemplate> changes = new TreeMap<>();
+        int parsed = 0;
+        int removed = 0;
+        for (String name : changed) {
+            StoryTemplate old = previous.get(name);
+            StoryTemplate template = load(folder.resolve(name), old);
+            if (template == null) {
+                if (old != null) {
+                    changes.put(name, null);
+                    removed++;
+                }
+            } else if (template != old) {
+                changes.put(name, template);
+                parsed++;
+            }
+        }
+        if (!changes.isEmpty()) {
+            publish(previous.apply(previous.version + 1, changes), parsed, removed, start);
+        }
+    }
+
+    private void publish(Snapshot snapshot, int parsed, int removed, long start) {
+        current = snapshot;
+        try {
+            listener.accept(new Reload(snapshot, parsed, removed, System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            // a broken listener must not end the watch thread and with it every later reload
+            System.err.println("Story reload listener failed: " + e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path folder = Paths.get(args.length > 0 ? args[0] : "M3/stories");
+        try (StoryCache cache = new StoryCache(folder, reload -> System.out.println(String.format(
+                "v%d: %d parsed, %d removed in %.2f ms, %d stories", reload.snapshot.version, reload.parsed,
+                reload.removed, reload.nanos / 1e6, reload.snapshot.size())))) {
+            System.out.println("Watching " + folder + " (" + cache.snapshot().size() + " stories), Ctrl+C to stop");
+            Thread.currentThread().join();
+        }
+    }
+}
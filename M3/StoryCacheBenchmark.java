@@ -0,0 +1,215 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/*
+StoryCache under churn
+----------------------
+- Usage: java M3.StoryCacheBenchmark [stories] [seconds] [readers]
+- Fills a temporary folder with [stories] small stories and opens a StoryCache on it
+- Readers loop: take the current snapshot, pick a random story, render it; the
+  first phase runs them on a quiet folder, the second while a writer rewrites
+  random stories as fast as the cache publishes them
+- Every rewrite adds a unique placeholder; its reload latency is the time from the
+  write until a published snapshot has the new version of that story
+- The third phase rewrites one story back to back (write a copy, then move it
+  over the story) without ever waiting for the cache, as a busy editor or
+  generator would; a sampler checks every millisecond how stale the served
+  version is (the age of the oldest write it does not show yet, 0 when it is
+  current), so a cache that never publishes under churn shows up
+- Reports reader renders/s for all phases, the reload latency percentiles and the
+  staleness percentiles
+*/
+
+public class StoryCacheBenchmark extends BaseClass {
+    // keeps results live so the JIT cannot drop the loops
+    static volatile int sink;
+
+    private static String story(int n, String marker) {
+        return "Story " + n + ": the <adjective> <animal> went to the <place>.\n"
+                + "It brought " + marker + " and a <plural_noun>.\n";
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static double readPhase(StoryCache cache, int readers, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder renders = new LongAdder();
+        Thread[] threads = new Thread[readers];
+        for (int t = 0; t < readers; t++) {
+            Random random = new Random(t);
+            threads[t] = new Thread(() -> {
+                int length = 0;
+                long count = 0;
+                while (running.get()) {
+                    StoryTemplate template = cache.snapshot().random(random);
+                    String[] answers = new String[template.placeholderCount()];
+                    Arrays.fill(answers, "word");
+                    length += template.render(answers).length();
+                    count++;
+                }
+                renders.add(count);
+                sink = length;
+            });
+            threads[t].start();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return renders.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static int visibleMarker(StoryCache cache, String name) {
+        StoryTemplate template = cache.snapshot().get(name);
+        int visible = -1;
+        if (template != null) {
+            for (String placeholder : template.placeholders()) {
+                if (placeholder.matches("m[0-9]+")) {
+                    visible = Integer.parseInt(placeholder.substring(1));
+                }
+            }
+        }
+        return visible;
+    }
+
+    private static void nonstopPhase(StoryCache cache, Path folder, int readers, long millis)
+            throws InterruptedException {
+        String name = "story0.txt";
+        long[] written = new long[1 << 21];
+        // index of the newest write; the volatile write publishes written[latest] to the sampler
+        AtomicInteger latest = new AtomicInteger(-1);
+        AtomicBoolean churning = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            try {
+                // replaced by an atomic move, so the cache never reads a half-written story
+                Path staging = Files.createTempDirectory("story-cache-staging");
+                try {
+                    Path next = staging.resolve(name);
+                    for (int n = 0; churning.get() && n < written.length; n++) {
+                        Files.writeString(next, story(0, "<m" + n + ">"));
+                        written[n] = System.nanoTime();
+                        Files.move(next, folder.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+                                StandardCopyOption.REPLACE_EXISTING);
+                        latest.set(n);
+                    }
+                } finally {
+                    delete(staging);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long[] staleness = new long[(int) millis + 1];
+        int[] samples = new int[1];
+        Thread sampler = new Thread(() -> {
+            while (churning.get() && samples[0] < staleness.length) {
+                int newest = latest.get();
+                int visible = visibleMarker(cache, name);
+                staleness[samples[0]++] = visible < newest ? System.nanoTime() - written[visible + 1] : 0;
+                LockSupport.parkNanos(1_000_000);
+            }
+        });
+        long versionBefore = cache.snapshot().version;
+        writer.start();
+        sampler.start();
+        double renders = readPhase(cache, readers, millis);
+        churning.set(false);
+        writer.join();
+        sampler.join();
+
+        long[] sorted = Arrays.copyOf(staleness, samples[0]);
+        Arrays.sort(sorted);
+        System.out.println(String.format("nonstop writer: %,.0f renders/s with %d readers, %,d rewrites of one story, "
+                + "%,d snapshots published", renders, readers, latest.get() + 1,
+                cache.snapshot().version - versionBefore));
+        if (sorted.length > 0) {
+            System.out.println(String.format("staleness: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                    sorted[sorted.length - 1] / 1e6));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        Path folder = Files.createTempDirectory("story-cache");
+        try {
+            for (int i = 0; i < size; i++) {
+                Files.writeString(folder.resolve("story" + i + ".txt"), story(i, "nothing"));
+            }
+            long start = System.nanoTime();
+            LongAdder reloadNanos = new LongAdder();
+            try (StoryCache cache = new StoryCache(folder, reload -> reloadNanos.add(reload.nanos))) {
+                System.out.println(colorize(String.format("%,d stories loaded in %.1f ms", cache.snapshot().size(),
+                        (System.nanoTime() - start) / 1e6), Color.PURPLE));
+
+                double quiet = readPhase(cache, readers, seconds * 1000L);
+                System.out.println(String.format("quiet folder: %,.0f renders/s with %d readers", quiet, readers));
+
+                AtomicBoolean churning = new AtomicBoolean(true);
+                long[] latencies = new long[1 << 20];
+                int[] measured = new int[1];
+                Thread writer = new Thread(() -> {
+                    SplittableRandom random = new SplittableRandom(3);
+                    try {
+                        for (int n = 0; churning.get() && n < latencies.length; n++) {
+                            String name = "story" + random.nextInt(size) + ".txt";
+                            String marker = "m" + n;
+                            long written = System.nanoTime();
+                            Files.writeString(folder.resolve(name), story(n, "<" + marker + ">"));
+                            while (churning.get()) {
+                                StoryTemplate template = cache.snapshot().get(name);
+                                if (template != null && template.placeholders().contains(marker)) {
+                                    latencies[measured[0]++] = System.nanoTime() - written;
+                                    break;
+                                }
+                                LockSupport.parkNanos(20_000);
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                writer.start();
+                double churn = readPhase(cache, readers, seconds * 1000L);
+                churning.set(false);
+                writer.join();
+
+                long[] sorted = Arrays.copyOf(latencies, measured[0]);
+                Arrays.sort(sorted);
+                System.out.println(String.format("under churn: %,.0f renders/s with %d readers, %,d rewrites, "
+                        + "snapshot v%d, %.2f ms per reload", churn, readers, sorted.length,
+                        cache.snapshot().version, reloadNanos.sum() / 1e6 / Math.max(1, cache.snapshot().version)));
+                if (sorted.length > 0) {
+                    System.out.println(String.format("reload latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                            sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                            sorted[sorted.length - 1] / 1e6));
+                }
+
+                nonstopPhase(cache, folder, readers, seconds * 1000L);
+            }
+        } finally {
+            delete(folder);
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package M3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+Indexed story catalog
+---------------------
+- Usage: java M3.StoryCatalog update|list|pick [stories dir] [catalog dir]
+  (defaults: M3/stories and M3/stories.catalog)
+- All stories are packed back to back into one file (pack-<generation>); a small
+  index file holds, per story, its offset and length in the pack plus the name,
+  modification time and size of the source file
+- Index layout (big-endian):
+    int MAGIC | int VERSION | int count | int nameBytes | long generation
+    | long packLength | long garbage | long directoryModified     (48 bytes)
+    then count entries of long offset | int length | int nameOffset
+    | long modified | long size                                   (32 bytes each)
+    then the UTF-8 names, back to back, in name order
+- Opening maps the index read-only and never lists the stories folder, so picking a
+  random story is O(1); the pack is mapped on first use and only the pages of
+  stories that are actually read are faulted in
+- Rebuilds are incremental: only new or changed files are read and appended to the
+  pack, deleted ones just leave garbage; once garbage outweighs live stories the
+  pack is rewritten under the next generation
+- open() rebuilds when the folder's modification time differs from the indexed one
+  (files added, removed or renamed); "update" also compares every file's time and
+  size, which catches edits made in place
+- A catalog from open() also stats the story file on every text() / template() and
+  reads the file itself when its time or size no longer match the index, so a story
+  edited in place is never served stale (the next "update" packs the new text)
+- When the catalog folder cannot be written (read-only checkout), open() indexes
+  the stories in memory for that run instead
+- The index is replaced with an atomic rename and packs are only appended to (or
+  replaced by a new generation), so an open catalog stays valid during a rebuild;
+  concurrent rebuilds are serialized with a file lock
+*/
+
+public final class StoryCatalog implements Closeable {
+    static final int MAGIC = 0x53434154; // "SCAT"
+    static final int VERSION = 1;
+    static final int HEADER = 48;
+    static final int ENTRY = 32;
+    private static final String INDEX = "index";
+    private static final String LOCK = "lock";
+
+    private final ByteBuffer index;
+    private final int count;
+    private final int namesStart;
+    private final int nameBytes;
+    private final long packLength;
+    // null for an in-memory catalog, which has packMap set from the start
+    private final FileChannel pack;
+    // source folder whose files are checked for in-place edits; null when read as it is
+    private final Path stories;
+    private final AtomicReferenceArray<StoryTemplate> templates;
+    private volatile ByteBuffer packMap;
+
+    private StoryCatalog(ByteBuffer index, FileChannel pack, ByteBuffer packMap, Path stories) {
+        this.index = index;
+        this.count = index.getInt(8);
+        this.nameBytes = index.getInt(12);
+        this.packLength = index.getLong(24);
+        this.namesStart = HEADER + count * ENTRY;
+        this.pack = pack;
+        this.packMap = packMap;
+        this.stories = stories;
+        this.templates = new AtomicReferenceArray<>(count);
+    }
+
+    /** Default catalog location: a sibling of the stories folder, e.g. M3/stories.catalog. */
+    public static Path defaultLocation(Path stories) {
+        return stories.toAbsolutePath().normalize().resolveSibling(stories.getFileName() + ".catalog");
+    }
+
+    /** Opens the catalog of {@code stories}, rebuilding it first if the folder changed. */
+    public static StoryCatalog open(Path stories) throws IOException {
+        return open(stories, defaultLocation(stories));
+    }
+
+    public static StoryCatalog open(Path stories, Path catalog) throws IOException {
+        Path indexFile = catalog.resolve(INDEX);
+        try {
+            if (!Files.exists(indexFile)
+                    || readHeaderLong(indexFile, 40) != Files.getLastModifiedTime(stories).toMillis()) {
+                update(stories, catalog, false);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // the catalog cannot be written here: index the folder for this run only (this
+            // also reports a missing stories folder as NoSuchFileException)
+            return inMemory(stories);
+        }
+        return read(catalog, stories);
+    }
+
+    /** Opens an existing catalog as it is. */
+    public static StoryCatalog read(Path catalog) throws IOException {
+        return read(catalog, null);
+    }
+
+    private static StoryCatalog read(Path catalog, Path stories) throws IOException {
+        MappedByteBuffer index;
+        try (FileChannel channel = FileChannel.open(catalog.resolve(INDEX), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (index.capacity() < HEADER || index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+            throw new IOException("not a story catalog: " + catalog);
+        }
+        FileChannel pack = FileChannel.open(catalog.resolve(packName(index.getLong(16))), StandardOpenOption.READ);
+        return new StoryCatalog(index, pack, null, stories);
+    }
+
+    /** A catalog of {@code stories} built on the heap, without writing anything. */
+    static StoryCatalog inMemory(Path stories) throws IOException {
+        List<Entry> entries = scan(stories);
+        byte[][] texts = new byte[entries.size()][];
+        long packLength = 0;
+        for (int i = 0; i < texts.length; i++) {
+            Entry entry = entries.get(i);
+            try {
+                texts[i] = Files.readAllBytes(stories.resolve(entry.name));
+            } catch (NoSuchFileException e) {
+                texts[i] = new byte[0]; // deleted since the scan
+            }
+            entry.offset = packLength;
+            entry.length = texts[i].length;
+            packLength += texts[i].length;
+        }
+        if (packLength > Integer.MAX_VALUE) {
+            throw new IOException("stories in " + stories + " are too large to index in memory");
+        }
+        ByteBuffer pack = ByteBuffer.allocate((int) packLength);
+        for (byte[] text : texts) {
+            pack.put(text);
+        }
+        ByteBuffer index = encodeIndex(entries, 0, packLength, 0, Files.getLastModifiedTime(stories).toMillis());
+        return new StoryCatalog(index, null, pack, stories);
+    }
+
+    private static long readHeaderLong(Path indexFile, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            return header.position() == HEADER && header.getInt(0) == MAGIC ? header.getLong(offset) : -1;
+        }
+    }
+
+    static String packName(long generation) {
+        return "pack-" + generation;
+    }
+
+    /** Number of stories. */
+    public int size() {
+        return count;
+    }
+
+    /** File name of story {@code i}. */
+    public String name(int i) {
+        int from = index.getInt(entry(i) + 12);
+        int to = i + 1 < count ? index.getInt(entry(i + 1) + 12) : nameBytes;
+        byte[] bytes = new byte[to - from];
+        index.get(namesStart + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int entry(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("story " + i + " of " + count);
+        }
+        return HEADER + i * ENTRY;
+    }
+
+    /** A random story index, without touching the stories folder. */
+    public int random(Random rand) {
+        return rand.nextInt(count);
+    }
+
+    /** Text of story {@code i} (platform charset, like Scanner(File)). */
+    public String text(int i) throws IOException {
+        byte[] edited = edited(i);
+        return new String(edited != null ? edited : packed(i), Charset.defaultCharset());
+    }
+
+    /** The story file's current bytes if it was edited since it was indexed, else null. */
+    private byte[] edited(int i) throws IOException {
+        if (stories == null) {
+            return null;
+        }
+        int at = entry(i);
+        Path file = stories.resolve(name(i));
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.lastModifiedTime().toMillis() == index.getLong(at + 16)
+                && attributes.size() == index.getLong(at + 24)) {
+            return null;
+        }
+        return Files.readAllBytes(file);
+    }
+
+    private byte[] packed(int i) throws IOException {
+        int at = entry(i);
+        long offset = index.getLong(at);
+        int length = index.getInt(at + 8);
+        byte[] bytes = new byte[length];
+        if (packLength <= Integer.MAX_VALUE) {
+            packMap().get((int) offset, bytes);
+        } else {
+            // too large for one mapping: map just this story
+            pack.map(FileChannel.MapMode.READ_ONLY, offset, length).get(bytes);
+        }
+        return bytes;
+    }
+
+    private ByteBuffer packMap() throws IOException {
+        ByteBuffer map = packMap;
+        if (map == null) {
+            synchronized (this) {
+                map = packMap;
+                if (map == null) {
+                    map = pack.map(FileChannel.MapMode.READ_ONLY, 0, packLength);
+                    packMap = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    /** Compiled story {@code i}; each story is parsed at most once per catalog. */
+    public StoryTemplate template(int i) throws IOException {
+        byte[] edited = edited(i);
+        if (edited != null) {
+            // not cached: the packed text is still the indexed one
+            return StoryTemplate.compile(StoryTemplate.lines(new String(edited, Charset.defaultCharset())));
+        }
+        StoryTemplate template = templates.get(i);
+        if (template == null) {
+            template = StoryTemplate.compile(StoryTemplate.lines(new String(packed(i), Charset.defaultCharset())));
+            if (!templates.compareAndSet(i, null, template)) {
+                template = templates.get(i);
+            }
+        }
+        return template;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pack != null) {
+            pack.close();
+        }
+    }
+
+    /** A story file as indexed: where its text is in the pack and what the file looked like. */
+    private static final class Entry {
+        final String name;
+        final long modified;
+        final long size;
+        long offset = -1;
+        int length;
+
+        Entry(String name, long modified, long size) {
+            this.name = name;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    /** Result of an update, for reporting. */
+    public static final class Update {
+        public final int stories;
+        public final int read;
+        public final int removed;
+        public final boolean compacted;
+
+        Update(int stories, int read, int removed, boolean compacted) {
+            this.stories = stories;
+            this.read = read;
+            this.removed = removed;
+            this.compacted = compacted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d stories, %,d read, %,d removed%s", stories, read, removed,
+                    compacted ? ", pack compacted" : "");
+        }
+    }
+
+    /**
+     * Brings the catalog in line with the stories folder. Without {@code rescan} nothing is
+     * done while the folder's modification time matches the index.
+     */
+    public static Update update(Path stories, Path catalog, boolean rescan) throws IOException {
+        Files.createDirectories(catalog);
+        try (FileChannel lockChannel = FileChannel.open(catalog.resolve(LOCK), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                return rebuild(stories, catalog, rescan);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static Update rebuild(Path stories, Path catalog, boolean rescan) throws IOException {
+        long directoryModified = Files.getLastModifiedTime(stories).toMillis();
+        Map<String, Entry> old = new HashMap<>();
+        long generation = 0;
+        long packLength = 0;
+        long garbage = 0;
+        Path indexFile = catalog.resolve(INDEX);
+        if (Files.exists(indexFile)) {
+            try (StoryCatalog current = read(catalog)) {
+                if (!rescan && current.index.getLong(40) == directoryModified) {
+                    return new Update(current.count, 0, 0, false);
+                }
+                generation = current.index.getLong(16);
+                packLength = current.packLength;
+                garbage = current.index.getLong(32);
+                for (int i = 0; i < current.count; i++) {
+                    int at = current.entry(i);
+                    Entry entry = new Entry(current.name(i), current.index.getLong(at + 16),
+                            current.index.getLong(at + 24));
+                    entry.offset = current.index.getLong(at);
+                    entry.length = current.index.getInt(at + 8);
+                    old.put(entry.name, entry);
+                }
+            } catch (IOException e) {
+                // unreadable index or missing pack: start over
+                old.clear();
+                generation++;
+                packLength = 0;
+                garbage = 0;
+            }
+        }
+
+        List<Entry> entries = scan(stories);
+        List<Entry> changed = new ArrayList<>();
+        long live = 0;
+        for (Entry entry : entries) {
+            Entry previous = old.remove(entry.name);
+            if (previous != null && previous.modified == entry.modified && previous.size == entry.size) {
+                entry.offset = previous.offset;
+                entry.length = previous.length;
+                live += entry.length;
+            } else {
+                if (previous != null) {
+                    garbage += previous.length;
+                }
+                changed.add(entry);
+            }
+        }
+        int removed = old.size();
+        for (Entry gone : old.values()) {
+            garbage += gone.length;
+        }
+
+        boolean compact = garbage > 0 && garbage > live;
+        Path oldPack = catalog.resolve(packName(generation));
+        if (compact) {
+            generation++;
+            Path newPack = catalog.resolve(packName(generation));
+            try (FileChannel from = FileChannel.open(oldPack, StandardOpenOption.READ);
+                    FileChannel to = FileChannel.open(newPack, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                for (Entry entry : entries) {
+                    if (entry.offset >= 0) {
+                        long copied = 0;
+                        while (copied < entry.length) {
+                            copied += from.transferTo(entry.offset + copied, entry.length - copied, to);
+                        }
+                        entry.offset = position;
+                        position += entry.length;
+                    }
+                }
+                packLength = append(stories, changed, to, position);
+                to.force(false);
+            }
+            garbage = 0;
+        } else {
+            try (FileChannel to = FileChannel.open(oldPack, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                // drop whatever an interrupted rebuild may have left past the indexed end
+                to.truncate(packLength);
+                packLength = append(stories, changed, to, packLength);
+                to.force(false);
+            }
+        }
+
+        writeIndex(catalog, entries, generation, packLength, garbage, directoryModified);
+        if (compact) {
+            // open catalogs keep reading the old pack through their own file handle
+            Files.deleteIfExists(oldPack);
+        }
+        return new Update(entries.size(), changed.size(), removed, compact);
+    }
+
+    /** Regular files of {@code stories}, sorted by name. */
+    private static List<Entry> scan(Path stories) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stories)) {
+            for (Path file : files) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue; // deleted while listing
+                }
+                if (attributes.isRegularFile()) {
+                    entries.add(new Entry(file.getFileName().toString(), attributes.lastModifiedTime().toMillis(),
+                            attributes.size()));
+                }
+            }
+        }
+        entries.sort((a, b) -> a.name.compareTo(b.name));
+        return entries;
+    }
+
+    private static long append(Path stories, List<Entry> changed, FileChannel to, long position) throws IOException {
+        for (Entry entry : changed) {
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(stories.resolve(entry.name));
+            } catch (NoSuchFileException e) {
+                bytes = new byte[0]; // deleted since the scan; the next update drops it
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                position += to.write(buffer, position);
+            }
+            entry.offset = position - bytes.length;
+            entry.length = bytes.length;
+        }
+        return position;
+    }
+
+    private static void writeIndex(Path catalog, List<Entry> entries, long generation, long packLength,
+            long garbage, long directoryModified) throws IOException {
+        ByteBuffer buffer = encodeIndex(entries, generation, packLength, garbage, directoryModified);
+        Path temporary = catalog.resolve(INDEX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, catalog.resolve(INDEX), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static ByteBuffer encodeIndex(List<Entry> entries, long generation, long packLength, long garbage,
+            long directoryModified) {
+        byte[][] names = new byte[entries.size()][];
+        int nameBytes = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = entries.get(i).name.getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + entries.size() * ENTRY + nameBytes);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(nameBytes).putLong(generation)
+                .putLong(packLength).putLong(garbage).putLong(directoryModified);
+        int nameOffset = 0;
+        for (int i = 0; i < names.length; i++) {
+            Entry entry = entries.get(i);
+            buffer.putLong(entry.offset).putInt(entry.length).putInt(nameOffset).putLong(entry.modified)
+                    .putLong(entry.size);
+            nameOffset += names[i].length;
+        }
+        for (byte[] name : names) {
+            buffer.put(name);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java M3.StoryCatalog update|list|pick [stories dir] [catalog dir]");
+            return;
+        }
+        Path stories = Paths.get(args.length > 1 ? args[1] : "M3/stories");
+        Path catalog = args.length > 2 ? Paths.get(args[2]) : defaultLocation(stories);
+        switch (args[0]) {
+            case "update": {
+                long start = System.nanoTime();
+                Update update = update(stories, catalog, true);
+                System.out.println(String.format("%s in %.1f ms", update, (System.nanoTime() - start) / 1e6));
+                break;
+            }
+            case "list":
+                try (StoryCatalog opened = open(stories, catalog)) {
+                    for (int i = 0; i < opened.size(); i++) {
+                        System.out.println(opened.name(i) + "  " + opened.template(i).placeholderCount()
+                                + " placeholders");
+                    }
+                }
+                break;
+            case "pick":
+                try (StoryCatalog opened = open(stories, catalog)) {
+                    if (opened.size() == 0) {
+                        System.out.println("No stories in " + stories);
+                    } else {
+                        int i = opened.random(new Random());
+                        System.out.println(opened.name(i));
+                        System.out.print(opened.text(i));
+                    }
+                }
+                break;
+            default:
+                System.out.println("Unknown mode " + args[0] + "; use update, list or pick");
+        }
+    }
+}
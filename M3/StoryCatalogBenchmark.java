@@ -0,0 +1,126 @@
+package M3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.stream.Stream;
+
+/*
+Story selection: listing the folder vs StoryCatalog
+---------------------------------------------------
+- Usage: java M3.StoryCatalogBenchmark [stories] [rounds]
+- Writes [stories] small story files into a temporary folder
+- "listing" is what MadLibsGenerator did before the catalog: listFiles() for the
+  emptiness check, listFiles() again to pick one, then Scanner over the file
+- "catalog" opens the catalog (header check only, no listing), picks a random index
+  and reads the story through the mapped pack
+- Then 1% of the files are edited, 1% deleted and 1% added, and the incremental
+  update is timed against a rebuild from scratch; every story in the catalog is
+  compared with its file afterwards
+*/
+
+public class StoryCatalogBenchmark extends BaseClass {
+    // keeps results live so the JIT cannot drop the loops
+    static volatile int sink;
+
+    private static String story(Random random, int n) {
+        return "Story " + n + ": the <adjective> <animal> went to the <place>.\n"
+                + "It was " + random.nextInt(1000) + " <plural_noun> long!\n";
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static String legacyPick(File folder, Random random) throws IOException {
+        if (!folder.exists() || !folder.isDirectory() || folder.listFiles().length == 0) {
+            return "";
+        }
+        File[] storyFiles = folder.listFiles();
+        File selectedFile = storyFiles[random.nextInt(storyFiles.length)];
+        List<String> lines = new ArrayList<>();
+        try (Scanner fileScanner = new Scanner(selectedFile)) {
+            while (fileScanner.hasNextLine()) {
+                lines.add(fileScanner.nextLine());
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path root = Files.createTempDirectory("story-catalog");
+        Path stories = root.resolve("stories");
+        Path catalog = root.resolve("stories.catalog");
+        Random random = new Random(7);
+        try {
+            Files.createDirectories(stories);
+            for (int i = 0; i < size; i++) {
+                Files.writeString(stories.resolve("story" + i + ".txt"), story(random, i));
+            }
+            long start = System.nanoTime();
+            StoryCatalog.update(stories, catalog, true);
+            System.out.println(colorize(String.format("%,d stories, catalog built in %.1f ms", size,
+                    (System.nanoTime() - start) / 1e6), Color.PURPLE));
+
+            File folder = stories.toFile();
+            for (int r = 0; r < rounds; r++) {
+                int length = 0;
+                start = System.nanoTime();
+                length += legacyPick(folder, random).length();
+                long listing = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                try (StoryCatalog opened = StoryCatalog.open(stories, catalog)) {
+                    length += opened.template(opened.random(random)).placeholderCount();
+                }
+                long indexed = System.nanoTime() - start;
+                sink = length;
+                System.out.println(String.format("round %d: listing %.2f ms, catalog %.3f ms (%.0fx)", r + 1,
+                        listing / 1e6, indexed / 1e6, (double) listing / indexed));
+            }
+
+            int churn = Math.max(1, size / 100);
+            for (int i = 0; i < churn; i++) {
+                Path edited = stories.resolve("story" + random.nextInt(size) + ".txt");
+                Files.writeString(edited, story(random, -i) + "Edited.\n");
+                Files.deleteIfExists(stories.resolve("story" + random.nextInt(size) + ".txt"));
+                Files.writeString(stories.resolve("new" + i + ".txt"), story(random, size + i));
+            }
+            start = System.nanoTime();
+            StoryCatalog.Update update = StoryCatalog.update(stories, catalog, true);
+            long incremental = System.nanoTime() - start;
+            Path fresh = root.resolve("fresh.catalog");
+            start = System.nanoTime();
+            StoryCatalog.update(stories, fresh, true);
+            long full = System.nanoTime() - start;
+            System.out.println(String.format("After churn: %s; incremental %.1f ms, from scratch %.1f ms", update,
+                    incremental / 1e6, full / 1e6));
+
+            int mismatches = 0;
+            try (StoryCatalog opened = StoryCatalog.read(catalog)) {
+                for (int i = 0; i < opened.size(); i++) {
+                    String expected = new String(Files.readAllBytes(stories.resolve(opened.name(i))),
+                            Charset.defaultCharset());
+                    if (!expected.equals(opened.text(i))) {
+                        mismatches++;
+                    }
+                }
+                System.out.println(String.format("Checked %,d stories against their files: %d mismatches",
+                        opened.size(), mismatches));
+            }
+        } finally {
+            delete(root);
+        }
+    }
+}
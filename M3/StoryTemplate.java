@@ -0,0 +1,194 @@
+package M3;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*
+Compiled Mad Libs story
+-----------------------
+- A story is parsed once into alternating literal and placeholder segments:
+  literal[0] <p0> literal[1] <p1> ... literal[n]
+- Placeholders are found like MadLibsGenerator always did: the first '<' on a
+  line, then the first '>' after it; a '<' without a matching '>' on the same line
+  is plain text
+- The prompt text (underscores shown as spaces) is computed at compile time
+- render() makes one pass into a StringBuilder sized exactly for the literals
+  plus the answers, instead of rebuilding the line with substring concatenation
+  once per placeholder
+- cached(file) keeps compiled stories by path, so repeat renders never re-read
+  or re-parse the file
+- Unlike the old loop, answers are inserted as-is: an answer containing "<x>" is
+  not treated as another placeholder
+*/
+
+public final class StoryTemplate {
+    private static final Map<Path, StoryTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String[] literals;
+    private final String[] placeholders;
+    private final String[] prompts;
+    private final int literalLength;
+
+    private StoryTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        this.prompts = new String[this.placeholders.length];
+        for (int i = 0; i < prompts.length; i++) {
+            prompts[i] = this.placeholders[i].replace('_', ' ');
+        }
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /** Compiles a story; every line is followed by "\n" when rendered. */
+    public static StoryTemplate compile(List<String> lines) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for (String line : lines) {
+            scan(line, literal, literals, placeholders);
+            literal.append('\n');
+        }
+        literals.add(literal.toString());
+        return new StoryTemplate(literals, placeholders);
+    }
+
+    /** Compiles a single line (no trailing newline). */
+    public static StoryTemplate compileLine(String line) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        scan(line, literal, literals, placeholders);
+        literals.add(literal.toString());
+        return new StoryTemplate(literals, placeholders);
+    }
+
+    private static void scan(String line, StringBuilder literal, List<String> literals, List<String> placeholders) {
+        int position = 0;
+        while (true) {
+            int start = line.indexOf('<', position);
+            int end = start < 0 ? -1 : line.indexOf('>', start);
+            if (end < 0) {
+                break;
+            }
+            literal.append(line, position, start);
+            literals.add(literal.toString());
+            literal.setLength(0);
+            placeholders.add(line.substring(start + 1, end));
+            position = end + 1;
+        }
+        literal.append(line, position, line.length());
+    }
+
+    /** Reads and compiles a story file (platform charset, like Scanner(File)). */
+    public static StoryTemplate load(Path file) throws IOException {
+        String text = new String(Files.readAllBytes(file), Charset.defaultCharset());
+        return compile(lines(text));
+    }
+
+    static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(text.substring(start, i));
+                if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    /** The compiled story for {@code file}, compiling it on first use. */
+    public static StoryTemplate cached(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        StoryTemplate template = CACHE.get(key);
+        if (template == null) {
+            template = load(key);
+            StoryTemplate raced = CACHE.putIfAbsent(key, template);
+            if (raced != null) {
+                template = raced;
+            }
+        }
+        return template;
+    }
+
+    /** Drops every cached story. */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    public int placeholderCount() {
+        return placeholders.length;
+    }
+
+    /** Placeholder names as written in the story, e.g. "plural_noun". */
+    public List<String> placeholders() {
+        return Collections.unmodifiableList(Arrays.asList(placeholders));
+    }
+
+    /** Prompt text for each placeholder, e.g. "plural noun". */
+    public List<String> prompts() {
+        return Collections.unmodifiableList(Arrays.asList(prompts));
+    }
+
+    /** Characters of the story without its placeholders. */
+    public int literalLength() {
+        return literalLength;
+    }
+
+    /** Text before placeholder {@code i}; {@code literal(placeholderCount())} is the tail. */
+    String literal(int i) {
+        return literals[i];
+    }
+
+    /** Renders with {@code answers[i]} for placeholder i. */
+    public String render(String[] answers) {
+        if (answers.length != placeholders.length) {
+            throw new IllegalArgumentException(
+                    "expected " + placeholders.length + " answers, got " + answers.length);
+        }
+        int length = literalLength;
+        for (String answer : answers) {
+            length += answer.length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        renderTo(out, answers);
+        return out.toString();
+    }
+
+    /** Appends the rendered story to {@code out}. */
+    public void renderTo(StringBuilder out, String[] answers) {
+        out.append(literals[0]);
+        for (int i = 0; i < answers.length; i++) {
+            out.append(answers[i]).append(literals[i + 1]);
+        }
+    }
+
+    /** Asks {@code answer} for every prompt, in story order, then renders. */
+    public String render(Function<String, String> answer) {
+        String[] answers = new String[prompts.length];
+        for (int i = 0; i < answers.length; i++) {
+            answers[i] = answer.apply(prompts[i]);
+        }
+        return render(answers);
+    }
+}
@@ -0,0 +1,130 @@
+package M3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.function.Function;
+
+/*
+Story rendering: line-by-line replacement vs StoryTemplate
+----------------------------------------------------------
+- Usage: java M3.StoryTemplateBenchmark [repeats] [rounds]
+- Every story in M3/stories is repeated [repeats] times to make one large story
+- "original" is the MadLibsGenerator loop before StoryTemplate: read the file with
+  a Scanner, then rebuild each line once per placeholder
+- "compile+render" parses the text each time, "cached" renders a compiled template
+  from StoryTemplate.cached and never touches the parser
+- Before timing, every story is rendered both ways and compared
+*/
+
+public class StoryTemplateBenchmark extends BaseClass {
+    private static final String STORIES_FOLDER = "M3/stories";
+    // keeps results live so the JIT cannot drop the loops
+    static volatile int sink;
+
+    // MadLibsGenerator.fillPlaceholders before StoryTemplate
+    private static String original(String line, Function<String, String> answer) {
+        while (line.contains("<") && line.contains(">")) {
+            int start = line.indexOf("<");
+            int end = line.indexOf(">", start);
+            if (start >= 0 && end > start) {
+                String placeholder = line.substring(start + 1, end);
+                String displayPrompt = placeholder.replace("_", " ");
+                String userInput = answer.apply(displayPrompt);
+                line = line.substring(0, start) + userInput + line.substring(end + 1);
+            } else {
+                break;
+            }
+        }
+        return line;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Scanner scanner = new Scanner(file)) {
+            while (scanner.hasNextLine()) {
+                lines.add(scanner.nextLine());
+            }
+        }
+        return lines;
+    }
+
+    private static String renderOriginal(List<String> lines, Function<String, String> answer) {
+        StringBuilder story = new StringBuilder();
+        for (String line : lines) {
+            story.append(original(line, answer)).append("\n");
+        }
+        return story.toString();
+    }
+
+    // answers that depend on the prompt, so a wrong order shows up in the comparison
+    private static String answer(String prompt) {
+        return "[" + prompt.toUpperCase() + "]";
+    }
+
+    public static void main(String[] args) throws IOException {
+        int repeats = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File[] files = new File(STORIES_FOLDER).listFiles();
+        if (files == null || files.length == 0) {
+            System.out.println("No stories in " + STORIES_FOLDER);
+            return;
+        }
+
+        List<String> all = new ArrayList<>();
+        int mismatches = 0;
+        for (File file : files) {
+            List<String> lines = readLines(file);
+            all.addAll(lines);
+            String expected = renderOriginal(lines, StoryTemplateBenchmark::answer);
+            String actual = StoryTemplate.cached(file.toPath()).render(StoryTemplateBenchmark::answer);
+            if (!expected.equals(actual)) {
+                mismatches++;
+                System.out.println("Mismatch in " + file + ":\n" + expected + "---\n" + actual);
+            }
+        }
+        System.out.println(colorize(files.length + " stories rendered both ways, " + mismatches + " mismatches",
+                Color.PURPLE));
+
+        List<String> big = new ArrayList<>();
+        for (int i = 0; i < repeats; i++) {
+            big.addAll(all);
+        }
+        StoryTemplate compiled = StoryTemplate.compile(big);
+        String[] answers = new String[compiled.placeholderCount()];
+        for (int i = 0; i < answers.length; i++) {
+            answers[i] = answer(compiled.prompts().get(i));
+        }
+        System.out.println(String.format("%,d lines, %,d placeholders, %,d literal chars per render", big.size(),
+                answers.length, compiled.literalLength()));
+
+        int renders = Math.max(1, 2_000_000 / Math.max(1, compiled.literalLength()));
+        for (int r = 0; r < rounds; r++) {
+            int length = 0;
+            long start = System.nanoTime();
+            for (int n = 0; n < renders; n++) {
+                length += renderOriginal(big, StoryTemplateBenchmark::answer).length();
+            }
+            long original = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int n = 0; n < renders; n++) {
+                length += StoryTemplate.compile(big).render(StoryTemplateBenchmark::answer).length();
+            }
+            long compileRender = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int n = 0; n < renders; n++) {
+                length += compiled.render(answers).length();
+            }
+            long cached = System.nanoTime() - start;
+            sink = length;
+
+            System.out.println(String.format("round %d: original %.1f us, compile+render %.1f us, cached %.1f us "
+                    + "per story (%.1fx)", r + 1, original / 1e3 / renders, compileRender / 1e3 / renders,
+                    cached / 1e3 / renders, (double) original / cached));
+        }
+    }
+}